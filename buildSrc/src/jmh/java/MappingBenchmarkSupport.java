@@ -0,0 +1,371 @@
+import benchmark.MappingStages;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+// Bridges the benchmark package to the mapping classes, and generates synthetic spreadsheets and exports shaped like
+// the real ones: ids with gaps, params per method, some javadoc, mostly validated rows, and partial overlap between
+// the spreadsheet and the base export
+public class MappingBenchmarkSupport implements MappingStages {
+    private static final String[] WORDS = { "block", "entity", "world", "item", "stack", "player", "chunk", "state",
+        "position", "render", "tick", "update", "sound", "level", "inventory", "biome", "texture", "model", "amount",
+        "target" };
+    private static final String[] PREFIXES = { "get", "set", "is", "has", "create", "on", "update", "can" };
+    private static final String[] PACKAGES = { "block", "entity", "world", "item", "client/renderer", "util",
+        "network", "world/gen" };
+
+    @Override
+    public void generate(int rows, long seed, File spreadsheetFile, File exportFile) throws IOException {
+        Random random = new Random(seed);
+        int methods = rows * 40 / 100;
+        int fields = rows * 25 / 100;
+        String[] classes = new String[Math.max(1, rows / 30)];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = "net/minecraft/" + PACKAGES[random.nextInt(PACKAGES.length)] + "/"
+                + capitalize(word(random)) + capitalize(word(random)) + i;
+        }
+
+        MappingSpreadsheet spreadsheet = new MappingSpreadsheet(methods, fields, rows - methods - fields);
+        MappingExport export = new MappingExport(methods, fields, rows - methods - fields);
+        int id = 1000;
+        for (int generated = 0; generated < rows; generated++) {
+            id += 1 + random.nextInt(4);
+            boolean method = random.nextInt(methods + fields) < methods;
+            String className = classes[random.nextInt(classes.length)];
+            String unmapped = (method ? "func_" : "field_") + id + "_" + suffix(random) + (random.nextInt(8) == 0 ? "_" : "");
+            String mapped = method ? PREFIXES[random.nextInt(PREFIXES.length)] + capitalize(word(random))
+                : word(random) + capitalize(word(random));
+            Side side = Side.from(random.nextInt(10) == 0 ? random.nextInt(2) : 2);
+            String javadoc = random.nextInt(5) == 0 ? javadoc(random) : "";
+
+            int owner = random.nextInt(3);
+            if (owner != 1) { // In the spreadsheet, either alone or overriding the base export
+                MappingSpreadsheet.Entry entry = new MappingSpreadsheet.Entry(random.nextInt(10) != 0, className,
+                    unmapped, mapped, side, javadoc);
+                spreadsheet.add(method ? MappingType.METHOD : MappingType.FIELD, entry);
+            }
+            if (owner != 0) {
+                MappingExport.MemberEntry entry = new MappingExport.MemberEntry(unmapped,
+                    owner == 2 ? mapped + "Old" : mapped, side, javadoc);
+                if (method) {
+                    export.addMethod(unmapped, entry);
+                } else {
+                    export.addField(unmapped, entry);
+                }
+            }
+
+            if (method) {
+                String prefix = random.nextInt(10) == 0 ? "p_i" : "p_";
+                for (int p = 1, count = random.nextInt(3); p <= count && generated + 1 < rows; p++, generated++) {
+                    String param = prefix + id + "_" + p + "_";
+                    String paramName = "p" + capitalize(word(random));
+                    if (owner != 1) {
+                        spreadsheet.addParam(param, new MappingSpreadsheet.Entry(random.nextInt(10) != 0, className,
+                            param, paramName, side, ""));
+                    }
+                    if (owner != 0) {
+                        export.addParam(param, new MappingExport.ParamEntry(param, paramName, side));
+                    }
+                }
+            }
+        }
+
+        spreadsheet.write(spreadsheetFile);
+        export.write(exportFile);
+    }
+
+    @Override
+    public Object readSpreadsheet(File spreadsheet) {
+        return MappingSpreadsheet.read(spreadsheet);
+    }
+
+    @Override
+    public Object readSpreadsheet(File spreadsheet, ForkJoinPool pool) {
+        return MappingSpreadsheet.read(spreadsheet, new SpreadsheetDiagnostics(), pool);
+    }
+
+    @Override
+    public Object readExport(File export, Executor executor) {
+        return MappingExport.read(export, executor);
+    }
+
+    @Override
+    public Object combine(Object spreadsheet, Object baseExport) {
+        return CombineMappings.combine((MappingSpreadsheet) spreadsheet, (MappingExport) baseExport,
+            "net/minecraft/Placeholder", false);
+    }
+
+    @Override
+    public Object merge(List<File> sources) {
+        return new MappingMerger(sources, MappingMerger.precedence(Collections.emptyList()),
+            "net/minecraft/Placeholder", false).merge().getMerged();
+    }
+
+    @Override
+    public Object toExport(Object spreadsheet) {
+        return GenerateMappingExport.toExport((MappingSpreadsheet) spreadsheet);
+    }
+
+    @Override
+    public Object sortEntries(Object spreadsheet) {
+        MappingSpreadsheet mappings = (MappingSpreadsheet) spreadsheet;
+        return new Object[] { MappingSpreadsheet.sortById(mappings.getFields().values()),
+            MappingSpreadsheet.sortById(mappings.getMethods().values()),
+            MappingSpreadsheet.sortById(mappings.getParams().values()) };
+    }
+
+    @Override
+    public Object sortEntriesComparator(Object spreadsheet) {
+        MappingSpreadsheet mappings = (MappingSpreadsheet) spreadsheet;
+        List<Object> sorted = new ArrayList<>(3);
+        for (Map<String, MappingSpreadsheet.Entry> entries : List.of(mappings.getFields(), mappings.getMethods(),
+            mappings.getParams())) {
+            List<MappingSpreadsheet.Entry> kind = new ArrayList<>(entries.values());
+            kind.sort(Comparator.naturalOrder());
+            sorted.add(kind);
+        }
+        return sorted;
+    }
+
+    @Override
+    public Object shuffled(Object spreadsheet, long seed) {
+        MappingSpreadsheet mappings = (MappingSpreadsheet) spreadsheet;
+        MappingSpreadsheet copy = new MappingSpreadsheet(mappings.getMethods().size(), mappings.getFields().size(),
+            mappings.getParams().size());
+        Random random = new Random(seed);
+        for (MappingType type : MappingType.values()) {
+            List<MappingSpreadsheet.Entry> entries = new ArrayList<>((type == MappingType.METHOD ? mappings.getMethods()
+                : type == MappingType.FIELD ? mappings.getFields() : mappings.getParams()).values());
+            Collections.shuffle(entries, random);
+            for (MappingSpreadsheet.Entry entry : entries) {
+                copy.add(type, entry);
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    public void writeSpreadsheet(Object spreadsheet, File output) throws IOException {
+        ((MappingSpreadsheet) spreadsheet).write(output);
+    }
+
+    @Override
+    public void writeExport(Object export, File output, Executor executor) throws IOException {
+        ((MappingExport) export).write(output, executor, ZipEntry.DEFLATED, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    @Override
+    public void writeBinary(Object mappings, File output) throws IOException {
+        if (mappings instanceof MappingSpreadsheet) {
+            BinaryMappings.write(output, (MappingSpreadsheet) mappings);
+        } else {
+            BinaryMappings.write(output, (MappingExport) mappings);
+        }
+    }
+
+    @Override
+    public Object readBinarySpreadsheet(File input) {
+        return BinaryMappings.readSpreadsheet(input);
+    }
+
+    @Override
+    public Object readBinaryExport(File input) {
+        return BinaryMappings.readExport(input);
+    }
+
+    @Override
+    public Object unpooledCopy(Object mappings) {
+        if (mappings instanceof MappingSpreadsheet) {
+            MappingSpreadsheet spreadsheet = (MappingSpreadsheet) mappings;
+            MappingSpreadsheet copy = new MappingSpreadsheet(spreadsheet.getMethods().size(),
+                spreadsheet.getFields().size(), spreadsheet.getParams().size());
+            for (MappingType type : MappingType.values()) {
+                Map<String, MappingSpreadsheet.Entry> entries = type == MappingType.METHOD ? spreadsheet.getMethods()
+                    : type == MappingType.FIELD ? spreadsheet.getFields() : spreadsheet.getParams();
+                for (MappingSpreadsheet.Entry entry : entries.values()) {
+                    copy.add(type, new MappingSpreadsheet.Entry(entry.isValidated(), unshared(entry.getClassName()),
+                        entry.getUnmappedName(), unshared(entry.getMappedName()), entry.getSide(),
+                        unshared(entry.getJavadocComment())));
+                }
+            }
+            return copy;
+        }
+
+        MappingExport export = (MappingExport) mappings;
+        MappingExport copy = new MappingExport(export.getMethods().size(), export.getFields().size(),
+            export.getParams().size());
+        for (MappingExport.MemberEntry entry : export.getMethods().values()) {
+            copy.addMethod(entry.getUnmappedName(), new MappingExport.MemberEntry(entry.getUnmappedName(),
+                unshared(entry.getMappedName()), entry.getSide(), unshared(entry.getJavadoc())));
+        }
+        for (MappingExport.MemberEntry entry : export.getFields().values()) {
+            copy.addField(entry.getUnmappedName(), new MappingExport.MemberEntry(entry.getUnmappedName(),
+                unshared(entry.getMappedName()), entry.getSide(), unshared(entry.getJavadoc())));
+        }
+        for (MappingExport.ParamEntry entry : export.getParams().values()) {
+            copy.addParam(entry.getUnmappedName(), new MappingExport.ParamEntry(entry.getUnmappedName(),
+                unshared(entry.getMappedName()), entry.getSide()));
+        }
+        return copy;
+    }
+
+    // new String(String) would share the original's bytes, so only the String object itself would be a copy
+    private static String unshared(String value) {
+        return new String(value.toCharArray());
+    }
+
+    @Override
+    public void generateSources(Object export, int files, int fileLength, long seed, File directory)
+        throws IOException {
+        MappingExport mappings = (MappingExport) export;
+        String[] methods = mappings.getMethods().keySet().toArray(new String[0]);
+        String[] fields = mappings.getFields().keySet().toArray(new String[0]);
+        String[] params = mappings.getParams().keySet().toArray(new String[0]);
+        Random random = new Random(seed);
+        for (int i = 0; i < files; i++) {
+            String packageName = PACKAGES[random.nextInt(PACKAGES.length)];
+            String className = capitalize(word(random)) + capitalize(word(random)) + i;
+            StringBuilder source = new StringBuilder("package net.minecraft.").append(packageName.replace('/', '.'))
+                .append(";\n\npublic class ").append(className).append(" {\n");
+            while (source.length() < fileLength) {
+                String method = methods[random.nextInt(methods.length)];
+                String field = fields[random.nextInt(fields.length)];
+                String param = params[random.nextInt(params.length)];
+                switch (random.nextInt(5)) {
+                    case 0:
+                        source.append("    private int ").append(field).append(";\n");
+                        break;
+                    case 1:
+                        source.append("    public void ").append(method).append("(int ").append(param)
+                            .append(") {\n        this.").append(field).append(" = ").append(param)
+                            .append(";\n        LOGGER.debug(\"").append(method).append(" called\");\n    }\n");
+                        break;
+                    case 2: // Near misses, which stay as they are
+                        source.append("    int x").append(field).append(" = ").append(field).append("x + $")
+                            .append(method).append(" + func_").append(Integer.MAX_VALUE).append("_a;\n");
+                        break;
+                    case 3: // Non-ASCII neighbours, only some of which can be part of an identifier
+                        source.append("    // \u00e9").append(field).append(" \u2192").append(method)
+                            .append("\u00fc \u00a0").append(param).append("\u00bf\n");
+                        break;
+                    default:
+                        source.append("    // Calls ").append(method).append(" with ").append(field).append('\n');
+                        break;
+                }
+            }
+            source.append("}\n");
+            Path file = directory.toPath().resolve(packageName).resolve(className + ".java");
+            Files.createDirectories(file.getParent());
+            Files.write(file, source.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        // Not a source, so copied as it is
+        Files.write(directory.toPath().resolve("pack.mcmeta"), ("{ \"" + methods[0] + "\": 1 }\n")
+            .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public Object sourceRemapper(Object export) {
+        return new SourceRemapper((MappingExport) export);
+    }
+
+    @Override
+    public Object remapTree(Object remapper, File input, File output, Executor executor) throws IOException {
+        return ((SourceRemapper) remapper).remapTree(input.toPath(), output.toPath(), executor);
+    }
+
+    @Override
+    public ByteBuffer remapSource(Object remapper, ByteBuffer source) {
+        return ((SourceRemapper) remapper).remap(source);
+    }
+
+    @Override
+    public String remapSourceNaive(Object export, String source) {
+        MappingExport mappings = (MappingExport) export;
+        for (Map<String, ? extends MappingExport.Entry> entries : List.<Map<String, ? extends MappingExport.Entry>>of(
+            mappings.getMethods(), mappings.getFields(), mappings.getParams())) {
+            for (MappingExport.Entry entry : entries.values()) {
+                String name = entry.getUnmappedName();
+                if (SrgNames.classify(name) != null && !entry.getMappedName().isBlank() && source.contains(name)) {
+                    source = Pattern.compile("(?<!\\p{javaJavaIdentifierPart})" + Pattern.quote(name)
+                        + "(?!\\p{javaJavaIdentifierPart})").matcher(source)
+                        .replaceAll(Matcher.quoteReplacement(entry.getMappedName()));
+                }
+            }
+        }
+        return source;
+    }
+
+    @Override
+    public Object mappingIndex(Object export, Object spreadsheet) {
+        return MappingIndex.build((MappingExport) export, (MappingSpreadsheet) spreadsheet);
+    }
+
+    @Override
+    public Object lookup(Object index, String srgName) {
+        return ((MappingIndex) index).get(srgName);
+    }
+
+    @Override
+    public String[] srgNames(Object export) {
+        MappingExport mappings = (MappingExport) export;
+        List<String> names = new ArrayList<>(mappings.getMethods().keySet());
+        names.addAll(mappings.getFields().keySet());
+        names.addAll(mappings.getParams().keySet());
+        return names.toArray(new String[0]);
+    }
+
+    @Override
+    public AutoCloseable lookupService(Object index) throws IOException {
+        return new MappingLookupService((MappingIndex) index, 0);
+    }
+
+    @Override
+    public int lookupServicePort(AutoCloseable service) {
+        return ((MappingLookupService) service).getPort();
+    }
+
+    @Override
+    public void swapIndex(AutoCloseable service, Object index) {
+        ((MappingLookupService) service).swap((MappingIndex) index);
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String suffix(Random random) {
+        char[] suffix = new char[1 + random.nextInt(2)];
+        for (int i = 0; i < suffix.length; i++) {
+            suffix[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(suffix);
+    }
+
+    private static String javadoc(Random random) {
+        StringBuilder javadoc = new StringBuilder("Returns the ").append(word(random));
+        if (random.nextBoolean()) {
+            javadoc.append(", or the ").append(word(random)).append(" if there is none");
+        }
+        return javadoc.append('.').toString();
+    }
+}
@@ -0,0 +1,61 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CombineBenchmarks {
+    @Benchmark
+    public Object combine(MappingData data) {
+        return data.stages.combine(data.spreadsheet, data.baseExport);
+    }
+
+    // Both from the files, for comparison with merge
+    @Benchmark
+    public Object readAndCombine(MappingData data) {
+        return data.stages.combine(data.stages.readSpreadsheet(data.spreadsheetFile),
+            data.stages.readExport(data.exportFile, Runnable::run));
+    }
+
+    @Benchmark
+    public Object merge(MappingData data) {
+        return data.stages.merge(Arrays.asList(data.spreadsheetFile, data.exportFile));
+    }
+
+    @Benchmark
+    public Object toExport(MappingData data) {
+        return data.stages.toExport(data.combined);
+    }
+
+    @Benchmark
+    public Object sortEntries(MappingData data) {
+        return data.stages.sortEntries(data.combined);
+    }
+
+    @Benchmark
+    public Object sortEntriesComparator(MappingData data) {
+        return data.stages.sortEntriesComparator(data.combined);
+    }
+
+    @Benchmark
+    public Object sortShuffledEntries(MappingData data) {
+        return data.stages.sortEntries(data.shuffledCombined);
+    }
+
+    @Benchmark
+    public Object sortShuffledEntriesComparator(MappingData data) {
+        return data.stages.sortEntriesComparator(data.shuffledCombined);
+    }
+}
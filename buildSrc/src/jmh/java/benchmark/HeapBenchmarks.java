@@ -0,0 +1,64 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Heap retained by the combined model, with the readers' string pools and with every row holding its own strings.
+// The interesting result is the retainedBytes counter, from a single measured load since JMH sums such counters
+// over iterations; the times include the forced collections around the load.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class HeapBenchmarks {
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public Object combinedPooled(MappingData data, Footprint footprint) {
+        long before = usedHeap();
+        Object combined = data.stages.combine(data.stages.readSpreadsheet(data.spreadsheetFile),
+            data.stages.readExport(data.exportFile, Runnable::run));
+        footprint.retainedBytes = usedHeap() - before;
+        return combined;
+    }
+
+    @Benchmark
+    public Object combinedUnpooled(MappingData data, Footprint footprint) {
+        long before = usedHeap();
+        Object combined = data.stages.combine(
+            data.stages.unpooledCopy(data.stages.readSpreadsheet(data.spreadsheetFile)),
+            data.stages.unpooledCopy(data.stages.readExport(data.exportFile, Runnable::run)));
+        footprint.retainedBytes = usedHeap() - before;
+        return combined;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
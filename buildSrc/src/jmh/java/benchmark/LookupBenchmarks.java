@@ -0,0 +1,109 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Load test of the lookup service: concurrent clients looking up random SRG names over HTTP, sampled so JMH reports
+// latency percentiles (p0.99 among them), against the same lookups made directly on the index. In the swap group one
+// thread keeps swapping the index while the others look up.
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g", "-Dsun.net.httpserver.nodelay=true" })
+public class LookupBenchmarks {
+    @State(Scope.Benchmark)
+    public static class Service {
+        public MappingStages stages;
+        public Object index;
+        public Object otherIndex;
+        public AutoCloseable service;
+        public HttpClient client;
+        public URI base;
+        public String[] names;
+        private boolean swapped;
+
+        @Setup
+        public void setup(MappingData data) throws IOException {
+            stages = data.stages;
+            index = stages.mappingIndex(data.combinedExport, data.combined);
+            otherIndex = stages.mappingIndex(data.combinedExport, null);
+            service = stages.lookupService(index);
+            client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            base = URI.create("http://localhost:" + stages.lookupServicePort(service) + "/srg/");
+            names = stages.srgNames(data.combinedExport);
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            service.close();
+        }
+
+        String lookup(String name) throws IOException, InterruptedException {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(base.resolve(name)).build(),
+                HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Lookup of " + name + " failed: " + response.body());
+            }
+            return response.body();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private final Random random = new Random();
+
+        String next(Service service) {
+            return service.names[random.nextInt(service.names.length)];
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String httpLookup(Service service, Client client) throws IOException, InterruptedException {
+        return service.lookup(client.next(service));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object indexLookup(Service service, Client client) {
+        return service.stages.lookup(service.index, client.next(service));
+    }
+
+    @Benchmark
+    @Group("swap")
+    @GroupThreads(7)
+    public String httpLookupDuringSwap(Service service, Client client) throws IOException, InterruptedException {
+        return service.lookup(client.next(service));
+    }
+
+    // A swap every millisecond, far more often than new exports land
+    @Benchmark
+    @Group("swap")
+    @GroupThreads(1)
+    public void swapIndex(Service service) throws InterruptedException {
+        service.swapped = !service.swapped;
+        service.stages.swapIndex(service.service, service.swapped ? service.otherIndex : service.index);
+        Thread.sleep(1);
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+@State(Scope.Benchmark)
+public class MappingData {
+    @Param({ "10000", "100000", "1000000" })
+    public int rows;
+
+    public MappingStages stages;
+    public ExecutorService executor;
+    public Path directory;
+    public File spreadsheetFile;
+    public File exportFile;
+    public File spreadsheetBinary;
+    public File exportBinary;
+    public File output;
+
+    public Object spreadsheet;
+    public Object baseExport;
+    public Object combined;
+    public Object shuffledCombined;
+    public Object combinedExport;
+
+    @Setup
+    public void setup() throws IOException {
+        stages = MappingStages.load();
+        executor = Executors.newFixedThreadPool(3);
+        directory = Files.createTempDirectory("mappings-benchmark");
+        spreadsheetFile = directory.resolve("spreadsheet.csv").toFile();
+        exportFile = directory.resolve("export.zip").toFile();
+        spreadsheetBinary = directory.resolve("spreadsheet.bin").toFile();
+        exportBinary = directory.resolve("export.bin").toFile();
+        output = directory.resolve("output").toFile();
+
+        stages.generate(rows, 42L, spreadsheetFile, exportFile);
+        spreadsheet = stages.readSpreadsheet(spreadsheetFile);
+        baseExport = stages.readExport(exportFile, Runnable::run);
+        stages.writeBinary(spreadsheet, spreadsheetBinary);
+        stages.writeBinary(baseExport, exportBinary);
+        combined = stages.combine(spreadsheet, baseExport);
+        shuffledCombined = stages.shuffled(combined, 42L);
+        combinedExport = stages.toExport(combined);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        executor.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+// JMH refuses benchmarks in the default package, where the mapping classes live, and named packages can't refer to
+// the default package. Benchmarks therefore reach the pipeline stages through this interface, implemented by
+// MappingBenchmarkSupport in the default package.
+public interface MappingStages {
+    static MappingStages load() {
+        try {
+            return (MappingStages) Class.forName("MappingBenchmarkSupport").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to load the mapping benchmark support class", e);
+        }
+    }
+
+    // Writes a synthetic spreadsheet and base export with roughly the given number of rows each
+    void generate(int rows, long seed, File spreadsheet, File export) throws IOException;
+
+    Object readSpreadsheet(File spreadsheet);
+
+    // Parsed in chunks on the pool
+    Object readSpreadsheet(File spreadsheet, ForkJoinPool pool);
+
+    Object readExport(File export, Executor executor);
+
+    Object combine(Object spreadsheet, Object baseExport);
+
+    // Reads and merges the files, highest priority first, with the default precedence
+    Object merge(List<File> sources);
+
+    Object toExport(Object spreadsheet);
+
+    // Each kind in write order, with the writer's radix sort and with a comparison sort for reference
+    Object sortEntries(Object spreadsheet);
+
+    Object sortEntriesComparator(Object spreadsheet);
+
+    // Copy of a spreadsheet with each kind in random order, like rows edited by hand, rather than in id order
+    Object shuffled(Object spreadsheet, long seed);
+
+    void writeSpreadsheet(Object spreadsheet, File output) throws IOException;
+
+    void writeExport(Object export, File output, Executor executor) throws IOException;
+
+    // Binary form of either a spreadsheet or an export
+    void writeBinary(Object mappings, File output) throws IOException;
+
+    Object readBinarySpreadsheet(File input);
+
+    Object readBinaryExport(File input);
+
+    // Copy of a spreadsheet or export with its own string instance in every row, as before the readers pooled them
+    Object unpooledCopy(Object mappings);
+
+    // Writes Java-like sources using the export's names, with files of roughly the given size
+    void generateSources(Object export, int files, int fileLength, long seed, File directory) throws IOException;
+
+    Object sourceRemapper(Object export);
+
+    Object remapTree(Object remapper, File input, File output, Executor executor) throws IOException;
+
+    // The remapped source, or null if unchanged
+    ByteBuffer remapSource(Object remapper, ByteBuffer source);
+
+    // Reference remapping replacing each whole-word name in turn, as a search and replace per mapping would
+    String remapSourceNaive(Object export, String source);
+
+    // Index over an export, with class names and validation state from the spreadsheet if not null
+    Object mappingIndex(Object export, Object spreadsheet);
+
+    Object lookup(Object index, String srgName);
+
+    String[] srgNames(Object export);
+
+    // Lookup service for the index on a free port
+    AutoCloseable lookupService(Object index) throws IOException;
+
+    int lookupServicePort(AutoCloseable service);
+
+    void swapIndex(AutoCloseable service, Object index);
+}
@@ -0,0 +1,49 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReadBenchmarks {
+    @Benchmark
+    public Object readSpreadsheet(MappingData data) {
+        return data.stages.readSpreadsheet(data.spreadsheetFile);
+    }
+
+    @Benchmark
+    public Object readSpreadsheetParallel(MappingData data) {
+        return data.stages.readSpreadsheet(data.spreadsheetFile, ForkJoinPool.commonPool());
+    }
+
+    @Benchmark
+    public Object readExport(MappingData data) {
+        return data.stages.readExport(data.exportFile, Runnable::run);
+    }
+
+    @Benchmark
+    public Object readExportParallel(MappingData data) {
+        return data.stages.readExport(data.exportFile, data.executor);
+    }
+
+    @Benchmark
+    public Object readBinarySpreadsheet(MappingData data) {
+        return data.stages.readBinarySpreadsheet(data.spreadsheetBinary);
+    }
+
+    @Benchmark
+    public Object readBinaryExport(MappingData data) {
+        return data.stages.readBinaryExport(data.exportBinary);
+    }
+}
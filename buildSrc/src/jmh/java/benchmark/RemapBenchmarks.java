@@ -0,0 +1,113 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Remapping a generated source tree with the combined export. The naive reference only runs on a single file, as it
+// takes seconds per file once there are many mappings.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class RemapBenchmarks {
+    @State(Scope.Benchmark)
+    public static class SourceCorpus {
+        private static final int FILE_LENGTH = 12 * 1024;
+        // Files checked against the naive reference before benchmarking
+        private static final int VERIFIED_FILES = 5;
+
+        @Param({ "500" })
+        public int files;
+
+        public Object remapper;
+        public ExecutorService executor;
+        public Path directory;
+        public File sources;
+        public File output;
+        public ByteBuffer sample;
+        public String sampleText;
+
+        @Setup
+        public void setup(MappingData data) throws IOException {
+            remapper = data.stages.sourceRemapper(data.combinedExport);
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            directory = Files.createTempDirectory("remap-benchmark");
+            sources = directory.resolve("sources").toFile();
+            output = directory.resolve("output").toFile();
+            data.stages.generateSources(data.combinedExport, files, FILE_LENGTH, 42L, sources);
+
+            List<Path> sourceFiles;
+            try (Stream<Path> paths = Files.walk(sources.toPath())) {
+                sourceFiles = paths.filter(path -> path.toString().endsWith(".java")).sorted()
+                    .limit(VERIFIED_FILES).collect(Collectors.toList());
+            }
+            for (Path file : sourceFiles) {
+                byte[] source = Files.readAllBytes(file);
+                ByteBuffer remapped = data.stages.remapSource(remapper, ByteBuffer.wrap(source));
+                byte[] actual = remapped != null ? Arrays.copyOfRange(remapped.array(), 0, remapped.limit()) : source;
+                byte[] expected = data.stages.remapSourceNaive(data.combinedExport,
+                    new String(source, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+                if (!Arrays.equals(actual, expected)) {
+                    throw new IllegalStateException("Remapped " + file + " differs from the naive reference");
+                }
+            }
+            byte[] first = Files.readAllBytes(sourceFiles.get(0));
+            sample = ByteBuffer.wrap(first);
+            sampleText = new String(first, StandardCharsets.UTF_8);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            executor.shutdown();
+            try (Stream<Path> paths = Files.walk(directory)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    @Benchmark
+    public Object remapTree(MappingData data, SourceCorpus corpus) throws IOException {
+        return data.stages.remapTree(corpus.remapper, corpus.sources, corpus.output, corpus.executor);
+    }
+
+    @Benchmark
+    public Object remapTreeSequential(MappingData data, SourceCorpus corpus) throws IOException {
+        return data.stages.remapTree(corpus.remapper, corpus.sources, corpus.output, Runnable::run);
+    }
+
+    @Benchmark
+    public Object remapFile(MappingData data, SourceCorpus corpus) {
+        return data.stages.remapSource(corpus.remapper, corpus.sample.duplicate());
+    }
+
+    @Benchmark
+    public Object remapFileNaive(MappingData data, SourceCorpus corpus) {
+        return data.stages.remapSourceNaive(data.combinedExport, corpus.sampleText);
+    }
+}
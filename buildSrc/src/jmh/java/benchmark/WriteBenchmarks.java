@@ -0,0 +1,44 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WriteBenchmarks {
+    @Benchmark
+    public void writeSpreadsheet(MappingData data) throws IOException {
+        data.stages.writeSpreadsheet(data.combined, data.output);
+    }
+
+    @Benchmark
+    public void writeExport(MappingData data) throws IOException {
+        data.stages.writeExport(data.combinedExport, data.output, Runnable::run);
+    }
+
+    @Benchmark
+    public void writeExportParallel(MappingData data) throws IOException {
+        data.stages.writeExport(data.combinedExport, data.output, data.executor);
+    }
+
+    @Benchmark
+    public void writeBinarySpreadsheet(MappingData data) throws IOException {
+        data.stages.writeBinary(data.combined, data.output);
+    }
+
+    @Benchmark
+    public void writeBinaryExport(MappingData data) throws IOException {
+        data.stages.writeBinary(data.combinedExport, data.output);
+    }
+}
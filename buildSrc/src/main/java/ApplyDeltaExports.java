@@ -0,0 +1,74 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@CacheableTask
+public class ApplyDeltaExports extends DefaultTask {
+    private File baseExport;
+    private List<File> deltas = new ArrayList<>();
+    private File output;
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getBaseExport() {
+        return baseExport;
+    }
+
+    public void setBaseExport(File baseExport) {
+        this.baseExport = baseExport;
+    }
+
+    // Applied in order, each on top of the result of the previous ones
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public List<File> getDeltas() {
+        return deltas;
+    }
+
+    public void setDeltas(List<File> deltas) {
+        this.deltas = deltas;
+    }
+
+    // The files are fingerprinted without regard to their order, which decides what they're applied on top of
+    @Input
+    public List<String> getDeltaOrder() {
+        return deltas.stream().map(File::getName).collect(Collectors.toList());
+    }
+
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        if (output.exists() && !output.delete()) {
+            getLogger().error("Unable to delete existing output at " + output);
+        }
+        if (output.getParentFile() != null && !output.getParentFile().exists() && !output.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + output);
+        }
+
+        MappingExport export = MappingExport.read(baseExport);
+        for (File delta : deltas) {
+            export = MappingDelta.read(delta).apply(export);
+        }
+        export.write(output);
+    }
+}
@@ -0,0 +1,355 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary form of a MappingSpreadsheet or MappingExport, for intermediates that are read back many times.
+// Every string (names, class names, javadoc, SRG name suffixes) is stored once in a string table and referenced by
+// index, SRG names as a prefix code plus varint id plus suffix, and side and validated as bits of one flag byte.
+// Loading is one read of the file, one decode per distinct string and a varint walk over the rows.
+//
+// Layout: magic, version, string table (count, then length-prefixed UTF-8), then the methods, fields and params
+// (count, then rows), then for spreadsheets the diagnostics of the parse they came from. All integers after the
+// magic and version are unsigned varints.
+public final class BinaryMappings {
+    public static final String EXTENSION = ".bin";
+
+    private static final int SPREADSHEET_MAGIC = 0x4D534853; // MSHS
+    private static final int EXPORT_MAGIC = 0x4D534845; // MSHE
+    private static final int VERSION = 2;
+
+    private static final int SIDE_MASK = 0x03;
+    private static final int VALIDATED = 0x04;
+    private static final int SRG_NAME = 0x08; // Name stored as prefix, id and suffix instead of a plain string
+    private static final int PREFIX_SHIFT = 4;
+    private static final String[] PREFIXES = { "func_", "field_", "p_i", "p_" };
+
+    private BinaryMappings() {
+    }
+
+    public static boolean isBinary(File file) {
+        return file.getName().endsWith(EXTENSION);
+    }
+
+    public static void write(File output, MappingSpreadsheet mappings) throws IOException {
+        try (OutputStream out = Files.newOutputStream(output.toPath())) {
+            write(out, mappings, new SpreadsheetDiagnostics());
+        }
+    }
+
+    public static void write(File output, MappingExport export) throws IOException {
+        try (OutputStream out = Files.newOutputStream(output.toPath())) {
+            write(out, export);
+        }
+    }
+
+    public static MappingSpreadsheet readSpreadsheet(File input) {
+        return readSpreadsheet(input, new SpreadsheetDiagnostics());
+    }
+
+    public static MappingSpreadsheet readSpreadsheet(File input, SpreadsheetDiagnostics diagnostics) {
+        try {
+            return readSpreadsheet(Files.readAllBytes(input.toPath()), diagnostics);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading binary mappings file", e);
+        }
+    }
+
+    public static MappingExport readExport(File input) {
+        try {
+            return readExport(Files.readAllBytes(input.toPath()));
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading binary mappings file", e);
+        }
+    }
+
+    // Whether the data holds a spreadsheet rather than an export
+    static boolean isSpreadsheet(byte[] data) throws IOException {
+        return new Input(data).readInt() == SPREADSHEET_MAGIC;
+    }
+
+    // Reads either kind, converting a spreadsheet the same way GenerateMappingExport does
+    public static MappingExport readAsExport(File input) {
+        try {
+            byte[] data = Files.readAllBytes(input.toPath());
+            if (isSpreadsheet(data)) {
+                return GenerateMappingExport.toExport(readSpreadsheet(data, new SpreadsheetDiagnostics()));
+            }
+            return readExport(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading binary mappings file", e);
+        }
+    }
+
+    public static void write(OutputStream out, MappingSpreadsheet mappings, SpreadsheetDiagnostics diagnostics)
+        throws IOException {
+        Output rows = new Output();
+        rows.varint(mappings.getMethods().size());
+        rows.varint(mappings.getFields().size());
+        rows.varint(mappings.getParams().size());
+        for (Map<String, MappingSpreadsheet.Entry> entries : List.of(mappings.getMethods(), mappings.getFields(),
+            mappings.getParams())) {
+            for (MappingSpreadsheet.Entry entry : entries.values()) {
+                writeName(rows, entry.getUnmappedName(), entry.getSrgId(),
+                    entry.getSide().toNumber() | (entry.isValidated() ? VALIDATED : 0));
+                rows.string(entry.getMappedName());
+                rows.string(entry.getClassName());
+                rows.string(entry.getJavadocComment());
+            }
+        }
+
+        for (SpreadsheetDiagnostics.Problem problem : SpreadsheetDiagnostics.Problem.values()) {
+            List<SpreadsheetDiagnostics.Sample> samples = diagnostics.getSamples(problem);
+            rows.varint(diagnostics.getCount(problem));
+            rows.varint(samples.size());
+            for (SpreadsheetDiagnostics.Sample sample : samples) {
+                rows.varint(sample.getLine());
+                rows.string(sample.getValue());
+            }
+        }
+
+        rows.writeTo(out, SPREADSHEET_MAGIC);
+    }
+
+    // The problems found when the spreadsheet was parsed are replayed into diagnostics
+    public static MappingSpreadsheet readSpreadsheet(byte[] data, SpreadsheetDiagnostics diagnostics)
+        throws IOException {
+        Input in = new Input(data);
+        String[] strings = in.header(SPREADSHEET_MAGIC);
+        int[] counts = { in.varint(), in.varint(), in.varint() };
+        MappingSpreadsheet mappings = new MappingSpreadsheet(counts[0], counts[1], counts[2]);
+        MappingType[] types = { MappingType.METHOD, MappingType.FIELD, MappingType.PARAM };
+        for (int kind = 0; kind < types.length; kind++) {
+            for (int i = 0; i < counts[kind]; i++) {
+                int flags = in.flags();
+                String unmappedName = in.name(flags, strings);
+                String mappedName = strings[in.varint()];
+                String className = strings[in.varint()];
+                mappings.add(types[kind], new MappingSpreadsheet.Entry((flags & VALIDATED) != 0, className,
+                    unmappedName, mappedName, Side.from(flags & SIDE_MASK), strings[in.varint()]));
+            }
+        }
+
+        for (SpreadsheetDiagnostics.Problem problem : SpreadsheetDiagnostics.Problem.values()) {
+            int count = in.varint();
+            int sampleCount = in.varint();
+            List<SpreadsheetDiagnostics.Sample> samples = new ArrayList<>(sampleCount);
+            for (int i = 0; i < sampleCount; i++) {
+                samples.add(new SpreadsheetDiagnostics.Sample(in.varint(), strings[in.varint()]));
+            }
+            diagnostics.add(problem, count, samples);
+        }
+        return mappings;
+    }
+
+    public static void write(OutputStream out, MappingExport export) throws IOException {
+        Output rows = new Output();
+        rows.varint(export.getMethods().size());
+        rows.varint(export.getFields().size());
+        rows.varint(export.getParams().size());
+        for (Map<String, MappingExport.MemberEntry> entries : List.of(export.getMethods(), export.getFields())) {
+            for (MappingExport.MemberEntry entry : entries.values()) {
+                writeName(rows, entry.getUnmappedName(), entry.getSrgId(), entry.getSide().toNumber());
+                rows.string(entry.getMappedName());
+                rows.string(entry.getJavadoc());
+            }
+        }
+        for (MappingExport.ParamEntry entry : export.getParams().values()) {
+            writeName(rows, entry.getUnmappedName(), entry.getSrgId(), entry.getSide().toNumber());
+            rows.string(entry.getMappedName());
+        }
+
+        rows.writeTo(out, EXPORT_MAGIC);
+    }
+
+    public static MappingExport readExport(byte[] data) throws IOException {
+        Input in = new Input(data);
+        String[] strings = in.header(EXPORT_MAGIC);
+        int methods = in.varint();
+        int fields = in.varint();
+        int params = in.varint();
+        MappingExport export = new MappingExport(methods, fields, params);
+        for (int i = 0; i < methods; i++) {
+            MappingExport.MemberEntry entry = readMemberEntry(in, strings);
+            export.addMethod(entry.getUnmappedName(), entry);
+        }
+        for (int i = 0; i < fields; i++) {
+            MappingExport.MemberEntry entry = readMemberEntry(in, strings);
+            export.addField(entry.getUnmappedName(), entry);
+        }
+        for (int i = 0; i < params; i++) {
+            int flags = in.flags();
+            String unmappedName = in.name(flags, strings);
+            export.addParam(unmappedName, new MappingExport.ParamEntry(unmappedName, strings[in.varint()],
+                Side.from(flags & SIDE_MASK)));
+        }
+        return export;
+    }
+
+    private static MappingExport.MemberEntry readMemberEntry(Input in, String[] strings) throws IOException {
+        int flags = in.flags();
+        String unmappedName = in.name(flags, strings);
+        return new MappingExport.MemberEntry(unmappedName, strings[in.varint()], Side.from(flags & SIDE_MASK),
+            strings[in.varint()]);
+    }
+
+    // Names that are exactly a known prefix, the id in canonical form and a suffix are split up; anything else
+    // (leading zeros, ids that don't fit an int, unknown prefixes) is kept as a plain string
+    private static void writeName(Output out, String name, int srgId, int flags) {
+        if (srgId != SrgNames.NO_ID) {
+            for (int prefix = 0; prefix < PREFIXES.length; prefix++) {
+                if (!name.startsWith(PREFIXES[prefix])) {
+                    continue;
+                }
+                String id = Integer.toString(srgId);
+                if (name.startsWith(id, PREFIXES[prefix].length())) {
+                    out.flags(flags | SRG_NAME | (prefix << PREFIX_SHIFT));
+                    out.varint(srgId);
+                    out.string(name.substring(PREFIXES[prefix].length() + id.length()));
+                    return;
+                }
+                break;
+            }
+        }
+        out.flags(flags);
+        out.string(name);
+    }
+
+    private static class Output {
+        private final Map<String, Integer> stringIndices = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private byte[] bytes = new byte[8192];
+        private int size;
+
+        void flags(int flags) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) flags;
+        }
+
+        void varint(int value) {
+            ensureCapacity(5);
+            size = putVarint(bytes, size, value);
+        }
+
+        void string(String value) {
+            Integer index = stringIndices.get(value);
+            if (index == null) {
+                index = strings.size();
+                stringIndices.put(value, index);
+                strings.add(value);
+            }
+            varint(index);
+        }
+
+        void writeTo(OutputStream out, int magic) throws IOException {
+            byte[] header = new byte[8];
+            for (int i = 0; i < 4; i++) {
+                header[i] = (byte) (magic >>> (24 - i * 8));
+                header[4 + i] = (byte) (VERSION >>> (24 - i * 8));
+            }
+            out.write(header);
+
+            byte[] table = new byte[Math.max(16, strings.size() * 16)];
+            int length = putVarint(table, 0, strings.size());
+            for (String string : strings) {
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                if (table.length - length < encoded.length + 5) {
+                    table = Arrays.copyOf(table, Math.max(table.length * 2, length + encoded.length + 5));
+                }
+                length = putVarint(table, length, encoded.length);
+                System.arraycopy(encoded, 0, table, length, encoded.length);
+                length += encoded.length;
+            }
+            out.write(table, 0, length);
+            out.write(bytes, 0, size);
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        private static int putVarint(byte[] bytes, int position, int value) {
+            while ((value & ~0x7F) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+            return position;
+        }
+    }
+
+    private static class Input {
+        private final byte[] data;
+        private int position;
+
+        Input(byte[] data) {
+            this.data = data;
+        }
+
+        int readInt() throws IOException {
+            if (position + 4 > data.length) {
+                throw new IOException("Truncated binary mappings");
+            }
+            int value = ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16)
+                | ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        // Checks the magic and version, then decodes the string table
+        String[] header(int magic) throws IOException {
+            if (readInt() != magic || readInt() != VERSION) {
+                throw new IOException("Not a current binary mappings file of the expected kind");
+            }
+            String[] strings = new String[varint()];
+            for (int i = 0; i < strings.length; i++) {
+                int length = varint();
+                if (position + length > data.length) {
+                    throw new IOException("Truncated binary mappings");
+                }
+                strings[i] = new String(data, position, length, StandardCharsets.UTF_8);
+                position += length;
+            }
+            return strings;
+        }
+
+        int flags() throws IOException {
+            if (position >= data.length) {
+                throw new IOException("Truncated binary mappings");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        int varint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                if (position >= data.length) {
+                    throw new IOException("Truncated binary mappings");
+                }
+                byte b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in binary mappings");
+        }
+
+        String name(int flags, String[] strings) throws IOException {
+            if ((flags & SRG_NAME) == 0) {
+                return strings[varint()];
+            }
+            String prefix = PREFIXES[flags >>> PREFIX_SHIFT];
+            int id = varint();
+            return prefix + id + strings[varint()];
+        }
+    }
+}
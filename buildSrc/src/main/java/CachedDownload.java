@@ -0,0 +1,91 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+
+// Downloads a file through a DownloadCache. Always runs, since only the server knows whether the file changed,
+// but an unchanged file is copied from the cache instead of being transferred again.
+public class CachedDownload extends DefaultTask {
+    private String src;
+    private File dest;
+    private File cacheDirectory;
+    private long maxCacheSize = Long.MAX_VALUE;
+    private File metricsOutput;
+
+    public CachedDownload() {
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @Input
+    public String getSrc() {
+        return src;
+    }
+
+    public void setSrc(String src) {
+        this.src = src;
+    }
+
+    @OutputFile
+    public File getDest() {
+        return dest;
+    }
+
+    public void setDest(File dest) {
+        this.dest = dest;
+    }
+
+    @Internal
+    public File getCacheDirectory() {
+        return cacheDirectory;
+    }
+
+    public void setCacheDirectory(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    // In bytes, across the downloads and the snapshots of their parsed contents
+    @Internal
+    public long getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    public void setMaxCacheSize(long maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    // Optional file this download is recorded to as a pipeline stage, picked up by the export tasks' metrics
+    @Internal
+    public File getMetricsOutput() {
+        return metricsOutput;
+    }
+
+    public void setMetricsOutput(File metricsOutput) {
+        this.metricsOutput = metricsOutput;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        if (dest.getParentFile() != null && !dest.getParentFile().exists() && !dest.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + dest);
+        }
+
+        PipelineMetrics metrics = new PipelineMetrics();
+        PipelineMetrics.Stage stage = metrics.start(getName());
+        DownloadCache.Result result = new DownloadCache(cacheDirectory, maxCacheSize).fetch(URI.create(src), dest);
+        stage.bytesRead(result.getBytesTransferred()).bytesWritten(dest.length()).stop();
+
+        getLogger().lifecycle((result.isTransferred() ? "Downloaded " : "Unchanged, copied from cache: ") + src);
+        if (metricsOutput != null) {
+            if (metricsOutput.getParentFile() != null && !metricsOutput.getParentFile().exists()
+                && !metricsOutput.getParentFile().mkdirs()) {
+                getLogger().error("Unable to create parent directories for " + metricsOutput);
+            }
+            metrics.write(metricsOutput);
+        }
+    }
+}
@@ -1,20 +1,130 @@
 import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 
+@CacheableTask
 public class CombineMappings extends DefaultTask {
-    @Input File baseExportZip;
-    @Input File spreadsheet;
-    @Input String placeholderClassName;
-    @Input boolean allowUnvalidated;
+    private File baseExportZip;
+    private File spreadsheet;
+    private String placeholderClassName;
+    private boolean allowUnvalidated;
+    private int maxSpreadsheetProblems = -1;
+    private boolean parallel;
+    private File baseExportCache;
+    private File downloadCache;
+    private long downloadCacheSize = Long.MAX_VALUE;
+    private File output;
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getBaseExportZip() {
+        return baseExportZip;
+    }
+
+    public void setBaseExportZip(File baseExportZip) {
+        this.baseExportZip = baseExportZip;
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getSpreadsheet() {
+        return spreadsheet;
+    }
+
+    public void setSpreadsheet(File spreadsheet) {
+        this.spreadsheet = spreadsheet;
+    }
+
+    @Input
+    @Optional
+    public String getPlaceholderClassName() {
+        return placeholderClassName;
+    }
+
+    public void setPlaceholderClassName(String placeholderClassName) {
+        this.placeholderClassName = placeholderClassName;
+    }
 
     @Input
+    public boolean isAllowUnvalidated() {
+        return allowUnvalidated;
+    }
+
+    public void setAllowUnvalidated(boolean allowUnvalidated) {
+        this.allowUnvalidated = allowUnvalidated;
+    }
+
+    // Fails the task once the spreadsheet has more than this many problems, unless it's negative
+    @Input
+    public int getMaxSpreadsheetProblems() {
+        return maxSpreadsheetProblems;
+    }
+
+    public void setMaxSpreadsheetProblems(int maxSpreadsheetProblems) {
+        this.maxSpreadsheetProblems = maxSpreadsheetProblems;
+    }
+
+    @Internal
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    // When set, the base export is read lazily through an extracted copy cached in this directory
+    @Internal
+    public File getBaseExportCache() {
+        return baseExportCache;
+    }
+
+    public void setBaseExportCache(File baseExportCache) {
+        this.baseExportCache = baseExportCache;
+    }
+
+    // When set, parsed spreadsheets and base exports are cached in this directory (see DownloadCache)
+    @Internal
+    public File getDownloadCache() {
+        return downloadCache;
+    }
+
+    public void setDownloadCache(File downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    @Internal
+    public long getDownloadCacheSize() {
+        return downloadCacheSize;
+    }
+
+    public void setDownloadCacheSize(long downloadCacheSize) {
+        this.downloadCacheSize = downloadCacheSize;
+    }
+
     @OutputFile
-    File output;
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
 
     @TaskAction
     public void act() throws IOException {
@@ -25,37 +135,64 @@ public class CombineMappings extends DefaultTask {
             getLogger().error("Unable to create parent directories for " + output);
         }
 
-        final MappingSpreadsheet mappings = MappingSpreadsheet.read(spreadsheet);
-        final MappingExport baseExport = MappingExport.read(baseExportZip);
-        final MappingSpreadsheet outputMappings = new MappingSpreadsheet();
-
-        for (MappingSpreadsheet.Entry field : mappings.getFields().values()) {
-            if (field.isValidated() || allowUnvalidated) {
-                outputMappings.addField(field.getUnmappedName(), field);
-            }
+        final SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics(SpreadsheetDiagnostics.DEFAULT_SAMPLES,
+            maxSpreadsheetProblems);
+        final DownloadCache cache = downloadCache != null ? new DownloadCache(downloadCache, downloadCacheSize) : null;
+        final ForkJoinPool pool = parallel ? ForkJoinPool.commonPool() : null;
+        final MappingSpreadsheet mappings = cache != null ? cache.readSpreadsheet(spreadsheet, diagnostics, pool)
+            : MappingSpreadsheet.read(spreadsheet, diagnostics, pool);
+        if (!diagnostics.isEmpty()) {
+            getLogger().warn(diagnostics.summary());
+        }
+        if (baseExportCache != null) {
+            write(combine(mappings, LazyMappingExport.open(baseExportZip, baseExportCache), placeholderClassName,
+                allowUnvalidated), output);
+            return;
         }
 
-        for (MappingSpreadsheet.Entry method : mappings.getMethods().values()) {
-            if (method.isValidated() || allowUnvalidated) {
-                outputMappings.addMethod(method.getUnmappedName(), method);
+        final MappingExport baseExport;
+        if (parallel) {
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try {
+                baseExport = cache != null ? cache.readExport(baseExportZip, executor)
+                    : MappingExport.read(baseExportZip, executor);
+            } finally {
+                executor.shutdown();
             }
+        } else {
+            baseExport = cache != null ? cache.readExport(baseExportZip, Runnable::run)
+                : MappingExport.read(baseExportZip);
         }
+        write(combine(mappings, baseExport, placeholderClassName, allowUnvalidated), output);
+    }
 
-        for (MappingSpreadsheet.Entry param : mappings.getParams().values()) {
-            if (param.isValidated() || allowUnvalidated) {
-                outputMappings.addParam(param.getUnmappedName(), param);
-            }
+    // Writes the spreadsheet CSV, or the binary form if the file name ends in .bin
+    static void write(MappingSpreadsheet mappings, File output) throws IOException {
+        if (BinaryMappings.isBinary(output)) {
+            BinaryMappings.write(output, mappings);
+        } else {
+            mappings.write(output);
         }
+    }
+
+    public static MappingSpreadsheet combine(MappingSpreadsheet mappings, MappingExport baseExport,
+        String placeholderClassName, boolean allowUnvalidated) {
+        final MappingSpreadsheet outputMappings = new MappingSpreadsheet(
+            mappings.getMethods().size() + baseExport.getMethods().size(),
+            mappings.getFields().size() + baseExport.getFields().size(),
+            mappings.getParams().size() + baseExport.getParams().size());
+
+        addSpreadsheetEntries(mappings, outputMappings, allowUnvalidated);
 
         for (MappingExport.MemberEntry field : baseExport.getFields().values()) {
-            if (!outputMappings.hasField(field.getUnmappedName())) {
+            if (!outputMappings.hasField(field.getSrgId(), field.getUnmappedName())) {
                 outputMappings.addField(field.getUnmappedName(), new MappingSpreadsheet.Entry(true,
                     placeholderClassName, field.getUnmappedName(), field.getMappedName(), field.getSide(), field.getJavadoc()));
             }
         }
 
         for (MappingExport.MemberEntry method : baseExport.getMethods().values()) {
-            if (!outputMappings.hasMethod(method.getUnmappedName())) {
+            if (!outputMappings.hasMethod(method.getSrgId(), method.getUnmappedName())) {
                 outputMappings.addMethod(method.getUnmappedName(), new MappingSpreadsheet.Entry(true,
                     placeholderClassName, method.getUnmappedName(), method.getMappedName(), method.getSide(),
                     method.getJavadoc()));
@@ -63,12 +200,93 @@ public class CombineMappings extends DefaultTask {
         }
 
         for (MappingExport.ParamEntry param : baseExport.getParams().values()) {
-            if (!outputMappings.hasParam(param.getUnmappedName())) {
+            if (!outputMappings.hasParam(param.getSrgId(), param.getUnmappedName())) {
                 outputMappings.addParam(param.getUnmappedName(), new MappingSpreadsheet.Entry(true,
                     placeholderClassName, param.getUnmappedName(), param.getMappedName(), param.getSide(), ""));
             }
         }
 
-        outputMappings.write(output);
+        return outputMappings;
+    }
+
+    // Same as above, only decoding the base rows that the spreadsheet doesn't override
+    public static MappingSpreadsheet combine(MappingSpreadsheet mappings, LazyMappingExport baseExport,
+        String placeholderClassName, boolean allowUnvalidated) {
+        final StringPool pool = new StringPool();
+        final LazyMappingExport.Table fields = baseExport.getFields();
+        final LazyMappingExport.Table methods = baseExport.getMethods();
+        final LazyMappingExport.Table params = baseExport.getParams();
+        final MappingSpreadsheet outputMappings = new MappingSpreadsheet(
+            mappings.getMethods().size() + methods.size(),
+            mappings.getFields().size() + fields.size(),
+            mappings.getParams().size() + params.size());
+
+        addSpreadsheetEntries(mappings, outputMappings, allowUnvalidated);
+        final BitSet overriddenFields = overridden(outputMappings.getFields().values(), fields);
+        final BitSet overriddenMethods = overridden(outputMappings.getMethods().values(), methods);
+        final BitSet overriddenParams = overridden(outputMappings.getParams().values(), params);
+
+        for (int row = 0; row < fields.size(); row++) {
+            if (!overriddenFields.get(row) && !fields.isShadowed(row)) {
+                MappingExport.MemberEntry field = fields.memberEntry(row);
+                outputMappings.addField(field.getUnmappedName(), new MappingSpreadsheet.Entry(true,
+                    placeholderClassName, field.getUnmappedName(), pool.intern(field.getMappedName()), field.getSide(),
+                    pool.intern(field.getJavadoc())));
+            }
+        }
+
+        for (int row = 0; row < methods.size(); row++) {
+            if (!overriddenMethods.get(row) && !methods.isShadowed(row)) {
+                MappingExport.MemberEntry method = methods.memberEntry(row);
+                outputMappings.addMethod(method.getUnmappedName(), new MappingSpreadsheet.Entry(true,
+                    placeholderClassName, method.getUnmappedName(), pool.intern(method.getMappedName()),
+                    method.getSide(), pool.intern(method.getJavadoc())));
+            }
+        }
+
+        for (int row = 0; row < params.size(); row++) {
+            if (!overriddenParams.get(row) && !params.isShadowed(row)) {
+                MappingExport.ParamEntry param = params.paramEntry(row);
+                outputMappings.addParam(param.getUnmappedName(), new MappingSpreadsheet.Entry(true,
+                    placeholderClassName, param.getUnmappedName(), pool.intern(param.getMappedName()),
+                    param.getSide(), ""));
+            }
+        }
+
+        return outputMappings;
+    }
+
+    // The base rows the spreadsheet's entries replace, found by id and the bytes of the name, so base rows are only
+    // decoded to be added
+    private static BitSet overridden(Collection<MappingSpreadsheet.Entry> entries, LazyMappingExport.Table base) {
+        BitSet overridden = new BitSet(base.size());
+        for (MappingSpreadsheet.Entry entry : entries) {
+            int row = base.find(entry.getSrgId(), entry.getUnmappedName());
+            if (row >= 0) {
+                overridden.set(row);
+            }
+        }
+        return overridden;
+    }
+
+    private static void addSpreadsheetEntries(MappingSpreadsheet mappings, MappingSpreadsheet outputMappings,
+        boolean allowUnvalidated) {
+        for (MappingSpreadsheet.Entry field : mappings.getFields().values()) {
+            if (field.isValidated() || allowUnvalidated) {
+                outputMappings.addField(field.getUnmappedName(), field);
+            }
+        }
+
+        for (MappingSpreadsheet.Entry method : mappings.getMethods().values()) {
+            if (method.isValidated() || allowUnvalidated) {
+                outputMappings.addMethod(method.getUnmappedName(), method);
+            }
+        }
+
+        for (MappingSpreadsheet.Entry param : mappings.getParams().values()) {
+            if (param.isValidated() || allowUnvalidated) {
+                outputMappings.addParam(param.getUnmappedName(), param);
+            }
+        }
     }
 }
@@ -1,11 +1,295 @@
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
 
+// Diffs two sets of mappings in a single merge pass over both, in the order MappingSpreadsheet writes rows: fields,
+// then methods, then params, each by SRG id. Comparing files holds at most one table of each in memory:
+// - spreadsheet CSVs in that order (checked up front, see MappingMerger.isInMergeOrder) are streamed a row at a time
+// - export zips are read and sorted one CSV at a time, as their rows are ordered by name rather than id
+// - binary mappings and spreadsheets out of order are read whole, as load does
 public class CompareCSVs {
-    public static void compare(File export1, File export2) throws IOException {
-        List<String> lines1 = Files.readAllLines(export1.toPath());
-        List<String> lines2 = Files.readAllLines(export2.toPath());
+    public static final Comparator<MappingExport.Entry> BY_SRG_ID = Comparator
+        .comparingInt(MappingExport.Entry::getSrgId)
+        .thenComparing(MappingExport.Entry::getUnmappedName);
+
+    private static final MappingType[] ORDER = { MappingType.FIELD, MappingType.METHOD, MappingType.PARAM };
+
+    public enum ChangeType {
+        ADDED,
+        REMOVED,
+        RENAMED,
+        SIDE_CHANGED,
+        JAVADOC_CHANGED
+    }
+
+    public interface ChangeListener {
+        // oldEntry is null for ADDED, newEntry is null for REMOVED
+        void onChange(MappingType type, ChangeType change, MappingExport.Entry oldEntry, MappingExport.Entry newEntry);
+    }
+
+    // Loads either an export zip, binary mappings, or a spreadsheet CSV converted the same way GenerateMappingExport
+    // does
+    public static MappingExport load(File mappings) {
+        if (mappings.getName().endsWith(".zip")) {
+            return MappingExport.read(mappings);
+        }
+        if (BinaryMappings.isBinary(mappings)) {
+            return BinaryMappings.readAsExport(mappings);
+        }
+        return GenerateMappingExport.toExport(MappingSpreadsheet.read(mappings));
+    }
+
+    public static void compare(File oldMappings, File newMappings, ChangeListener listener) {
+        try (Cursor oldCursor = open(oldMappings); Cursor newCursor = open(newMappings)) {
+            compare(oldCursor, newCursor, listener);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mappings", e);
+        }
+    }
+
+    public static void compare(MappingExport oldMappings, MappingExport newMappings, ChangeListener listener) {
+        compare(new ExportCursor(oldMappings), new ExportCursor(newMappings), listener);
+    }
+
+    private static Cursor open(File mappings) {
+        if (mappings.getName().endsWith(".zip")) {
+            return new ZipCursor(mappings);
+        }
+        if (!BinaryMappings.isBinary(mappings) && MappingMerger.isInMergeOrder(mappings)) {
+            return new SpreadsheetCursor(mappings);
+        }
+        return new ExportCursor(load(mappings));
+    }
+
+    private static void compare(Cursor oldCursor, Cursor newCursor, ChangeListener listener) {
+        boolean hasOld = oldCursor.advance();
+        boolean hasNew = newCursor.advance();
+        while (hasOld || hasNew) {
+            int order;
+            if (!hasOld) {
+                order = 1;
+            } else if (!hasNew) {
+                order = -1;
+            } else {
+                order = compareKeys(oldCursor, newCursor);
+            }
+
+            if (order < 0) {
+                listener.onChange(oldCursor.type, ChangeType.REMOVED, oldCursor.entry, null);
+                hasOld = oldCursor.advance();
+            } else if (order > 0) {
+                listener.onChange(newCursor.type, ChangeType.ADDED, null, newCursor.entry);
+                hasNew = newCursor.advance();
+            } else {
+                compareEntries(oldCursor.type, oldCursor.entry, newCursor.entry, listener);
+                hasOld = oldCursor.advance();
+                hasNew = newCursor.advance();
+            }
+        }
+    }
+
+    private static int compareKeys(Cursor first, Cursor second) {
+        return first.type != second.type ? Integer.compare(rank(first.type), rank(second.type))
+            : BY_SRG_ID.compare(first.entry, second.entry);
+    }
+
+    private static int rank(MappingType type) {
+        return type == MappingType.FIELD ? 0 : type == MappingType.METHOD ? 1 : 2;
+    }
+
+    private static void compareEntries(MappingType type, MappingExport.Entry oldEntry, MappingExport.Entry newEntry,
+        ChangeListener listener) {
+        if (!oldEntry.getMappedName().equals(newEntry.getMappedName())) {
+            listener.onChange(type, ChangeType.RENAMED, oldEntry, newEntry);
+        }
+        if (oldEntry.getSide() != newEntry.getSide()) {
+            listener.onChange(type, ChangeType.SIDE_CHANGED, oldEntry, newEntry);
+        }
+        if (!Objects.equals(getJavadoc(oldEntry), getJavadoc(newEntry))) {
+            listener.onChange(type, ChangeType.JAVADOC_CHANGED, oldEntry, newEntry);
+        }
+    }
+
+    static String getJavadoc(MappingExport.Entry entry) {
+        return entry instanceof MappingExport.MemberEntry ? ((MappingExport.MemberEntry) entry).getJavadoc() : "";
+    }
+
+    // The rows of one side in merge order. Entries with a blank mapped name are left out, as they never make it into
+    // a written export.
+    private abstract static class Cursor implements Closeable {
+        MappingType type;
+        MappingExport.Entry entry;
+
+        // Moves to the next row, returning false once there are none left
+        abstract boolean advance();
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    // Walks each type's rows sorted, loading them when the merge reaches the type. The sort keeps rows sharing a name
+    // in the order they were loaded, and only the last of them is used, as a map of them would.
+    private abstract static class TableCursor extends Cursor {
+        private int rank = -1;
+        private MappingExport.Entry[] table = new MappingExport.Entry[0];
+        private int position;
+
+        abstract Collection<? extends MappingExport.Entry> load(MappingType type);
+
+        @Override
+        final boolean advance() {
+            while (position == table.length) {
+                if (++rank == ORDER.length) {
+                    type = null;
+                    entry = null;
+                    return false;
+                }
+                table = sorted(load(ORDER[rank]));
+                position = 0;
+            }
+            while (position + 1 < table.length && BY_SRG_ID.compare(table[position], table[position + 1]) == 0) {
+                position++;
+            }
+            type = ORDER[rank];
+            entry = table[position++];
+            return true;
+        }
+
+        private static MappingExport.Entry[] sorted(Collection<? extends MappingExport.Entry> entries) {
+            MappingExport.Entry[] sorted = new MappingExport.Entry[entries.size()];
+            int size = 0;
+            for (MappingExport.Entry entry : entries) {
+                if (!entry.getMappedName().isBlank()) {
+                    sorted[size++] = entry;
+                }
+            }
+            sorted = Arrays.copyOf(sorted, size);
+            Arrays.sort(sorted, BY_SRG_ID);
+            return sorted;
+        }
+    }
+
+    // Mappings already in memory
+    private static final class ExportCursor extends TableCursor {
+        private final MappingExport export;
+
+        ExportCursor(MappingExport export) {
+            this.export = export;
+        }
+
+        @Override
+        Collection<? extends MappingExport.Entry> load(MappingType type) {
+            return type == MappingType.METHOD ? export.getMethods().values()
+                : type == MappingType.FIELD ? export.getFields().values() : export.getParams().values();
+        }
+    }
+
+    // An export zip read one CSV at a time
+    private static final class ZipCursor extends TableCursor {
+        private final FileSystem zip;
+        private final StringPool pool = new StringPool();
+
+        ZipCursor(File export) {
+            try {
+                this.zip = FileSystems.newFileSystem(export.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException("Exception while reading mappings export file", e);
+            }
+        }
+
+        @Override
+        Collection<? extends MappingExport.Entry> load(MappingType type) {
+            String csv = type == MappingType.METHOD ? MappingExport.METHODS_CSV
+                : type == MappingType.FIELD ? MappingExport.FIELDS_CSV : MappingExport.PARAMS_CSV;
+            List<MappingExport.Entry> entries = new ArrayList<>();
+            try (CSVReader reader = new CSVReader(Files.newBufferedReader(zip.getPath(csv)))) {
+                reader.readNext(); // Skip header
+
+                for (String[] line : reader) {
+                    Side side = Side.from(Integer.parseInt(line[2]));
+                    entries.add(type == MappingType.PARAM
+                        ? new MappingExport.ParamEntry(line[0], pool.intern(line[1]), side)
+                        : new MappingExport.MemberEntry(line[0], pool.intern(line[1]), side, pool.intern(line[3])));
+                }
+            } catch (CsvValidationException e) {
+                throw new RuntimeException("Exception while reading " + csv, e);
+            } catch (IOException e) {
+                throw new RuntimeException("Exception while reading mappings export file", e);
+            }
+            return entries;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    // A spreadsheet CSV in merge order, converted a row at a time as GenerateMappingExport does. Of rows repeating a
+    // name the last is kept, as MappingSpreadsheet.read would.
+    private static final class SpreadsheetCursor extends Cursor {
+        private final File spreadsheet;
+        private final SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics();
+        private final MappingSpreadsheet.RowReader reader;
+        private MappingType pendingType;
+        private MappingSpreadsheet.Entry pending;
+
+        SpreadsheetCursor(File spreadsheet) {
+            this.spreadsheet = spreadsheet;
+            this.reader = new MappingSpreadsheet.RowReader(spreadsheet, diagnostics);
+            read();
+        }
+
+        @Override
+        boolean advance() {
+            while (pending != null) {
+                MappingType nextType = pendingType;
+                MappingSpreadsheet.Entry next = pending;
+                read();
+                while (pending != null && pendingType == nextType && pending.compareTo(next) == 0) {
+                    next = pending;
+                    read();
+                }
+                if (next.getMappedName().isBlank()) {
+                    continue;
+                }
+                MappingExport.Entry converted = nextType == MappingType.PARAM
+                    ? GenerateMappingExport.toParamEntry(next) : GenerateMappingExport.toMemberEntry(next);
+                if (entry != null && (nextType != type ? rank(nextType) < rank(type)
+                    : BY_SRG_ID.compare(converted, entry) < 0)) {
+                    throw new IllegalStateException(spreadsheet + " changed while being compared");
+                }
+                type = nextType;
+                entry = converted;
+                return true;
+            }
+            return false;
+        }
+
+        private void read() {
+            pending = reader.next();
+            pendingType = reader.getType();
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+            if (!diagnostics.isEmpty()) {
+                System.err.println(diagnostics.summary());
+            }
+        }
     }
 }
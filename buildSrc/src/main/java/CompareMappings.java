@@ -0,0 +1,91 @@
+import com.opencsv.CSVWriter;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+@CacheableTask
+public class CompareMappings extends DefaultTask {
+    private static final String[] HEADER = { "type", "change", "searge", "old", "new" };
+
+    private File oldMappings;
+    private File newMappings;
+    private File output;
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public File getOldMappings() {
+        return oldMappings;
+    }
+
+    public void setOldMappings(File oldMappings) {
+        this.oldMappings = oldMappings;
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public File getNewMappings() {
+        return newMappings;
+    }
+
+    public void setNewMappings(File newMappings) {
+        this.newMappings = newMappings;
+    }
+
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        if (output.getParentFile() != null && !output.getParentFile().exists() && !output.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + output);
+        }
+
+        final Map<CompareCSVs.ChangeType, Integer> counts = new EnumMap<>(CompareCSVs.ChangeType.class);
+        try (CSVWriter writer = new CSVWriter(new FileWriter(output))) {
+            writer.writeNext(HEADER);
+            CompareCSVs.compare(oldMappings, newMappings, (type, change, oldEntry, newEntry) -> {
+                counts.merge(change, 1, Integer::sum);
+                writer.writeNext(new String[] {
+                    type.name().toLowerCase(Locale.ROOT),
+                    change.name().toLowerCase(Locale.ROOT),
+                    oldEntry != null ? oldEntry.getUnmappedName() : newEntry.getUnmappedName(),
+                    describe(change, oldEntry),
+                    describe(change, newEntry)
+                });
+            });
+        }
+
+        getLogger().lifecycle("Compared " + oldMappings.getName() + " to " + newMappings.getName() + ": " + counts);
+    }
+
+    private static String describe(CompareCSVs.ChangeType change, MappingExport.Entry entry) {
+        if (entry == null) {
+            return "";
+        }
+        switch (change) {
+            case SIDE_CHANGED:
+                return Integer.toString(entry.getSide().toNumber());
+            case JAVADOC_CHANGED:
+                return CompareCSVs.getJavadoc(entry);
+            default:
+                return entry.getMappedName();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// Growable UTF-8 byte buffer that CSV rows are encoded into field by field, without building a String per row
+public class CsvBuffer {
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private byte[] bytes;
+    private int size;
+
+    public CsvBuffer() {
+        this(8192);
+    }
+
+    public CsvBuffer(int initialCapacity) {
+        this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    // Appends a field, quoting it only if it contains a separator, quote or line break
+    public CsvBuffer field(String value) {
+        if (needsQuoting(value)) {
+            ensureCapacity(value.length() + 2);
+            bytes[size++] = '"';
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    ensureCapacity(1);
+                    bytes[size++] = '"';
+                }
+                appendChar(value, i, c);
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+            }
+            ensureCapacity(1);
+            bytes[size++] = '"';
+        } else {
+            append(value);
+        }
+        return this;
+    }
+
+    public CsvBuffer field(int value) {
+        if (value >= 0 && value <= 9) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) ('0' + value);
+            return this;
+        }
+        return append(Integer.toString(value));
+    }
+
+    public CsvBuffer separator() {
+        ensureCapacity(1);
+        bytes[size++] = ',';
+        return this;
+    }
+
+    public CsvBuffer newLine() {
+        ensureCapacity(LINE_SEPARATOR.length);
+        System.arraycopy(LINE_SEPARATOR, 0, bytes, size, LINE_SEPARATOR.length);
+        size += LINE_SEPARATOR.length;
+        return this;
+    }
+
+    public CsvBuffer header(String[] header) {
+        for (int i = 0; i < header.length; i++) {
+            if (i > 0) {
+                separator();
+            }
+            field(header[i]);
+        }
+        return newLine();
+    }
+
+    public CsvBuffer append(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[size++] = (byte) c;
+            } else {
+                appendChar(value, i, c);
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+                ensureCapacity(length - i);
+            }
+        }
+        return this;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, size);
+    }
+
+    public long crc32() {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, size);
+        return crc.getValue();
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, 0, size);
+    }
+
+    public void reset() {
+        size = 0;
+    }
+
+    private void appendChar(String value, int i, char c) {
+        ensureCapacity(4);
+        if (c < 0x80) {
+            bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[size++] = (byte) (0xC0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+            bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+            bytes[size++] = '?'; // Unpaired surrogate, encoded the same way as String.getBytes does
+        } else {
+            bytes[size++] = (byte) (0xE0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+
+    private static boolean needsQuoting(String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
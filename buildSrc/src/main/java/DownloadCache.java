@@ -0,0 +1,298 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+// Local cache of downloads, stored by the SHA-256 of their content, alongside binary snapshots of their parsed
+// contents. Each URL remembers the hash, ETag and Last-Modified of its last download, so an unchanged resource is
+// answered with a 304 and neither transferred nor parsed again. Least recently used files are evicted once the
+// blobs and snapshots exceed the maximum size.
+public class DownloadCache {
+    private static final String BLOBS = "blobs";
+    private static final String SNAPSHOTS = "snapshots";
+    private static final String SOURCES = "sources";
+
+    private static final String SPREADSHEET_SNAPSHOT = ".spreadsheet";
+    private static final String EXPORT_SNAPSHOT = ".export";
+
+    private final Path directory;
+    private final long maxSize;
+    private final HttpClient client = HttpClient.newBuilder()
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+
+    public DownloadCache(File directory, long maxSize) {
+        this.directory = directory.toPath();
+        this.maxSize = maxSize;
+    }
+
+    // Fetches the resource into dest, from the cache if the server says it hasn't changed
+    public Result fetch(URI uri, File dest) throws IOException {
+        Path blobs = Files.createDirectories(directory.resolve(BLOBS));
+        Path sourceFile = Files.createDirectories(directory.resolve(SOURCES))
+            .resolve(hash(uri.toString()) + ".properties");
+        Properties source = readProperties(sourceFile);
+
+        String cachedHash = source.getProperty("sha256");
+        boolean cached = cachedHash != null && Files.isRegularFile(blobs.resolve(cachedHash));
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).GET();
+        if (cached && source.getProperty("etag") != null) {
+            request.header("If-None-Match", source.getProperty("etag"));
+        }
+        if (cached && source.getProperty("lastModified") != null) {
+            request.header("If-Modified-Since", source.getProperty("lastModified"));
+        }
+
+        HttpResponse<InputStream> response = send(request.build());
+        if (response.statusCode() == 304 && cached) {
+            response.body().close();
+            Path blob = blobs.resolve(cachedHash);
+            touch(blob);
+            Files.copy(blob, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return new Result(cachedHash, false, 0);
+        }
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Unexpected response " + response.statusCode() + " while downloading " + uri);
+        }
+
+        Path temp = Files.createTempFile(blobs, "download", ".tmp");
+        String hash;
+        long size;
+        try (DigestInputStream in = new DigestInputStream(response.body(), sha256())) {
+            size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            hash = hex(in.getMessageDigest().digest());
+        }
+        Path blob = blobs.resolve(hash);
+        if (Files.isRegularFile(blob)) {
+            Files.delete(temp);
+            touch(blob);
+        } else {
+            Files.move(temp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.copy(blob, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        source.clear();
+        source.setProperty("url", uri.toString());
+        source.setProperty("sha256", hash);
+        response.headers().firstValue("ETag").ifPresent(etag -> source.setProperty("etag", etag));
+        response.headers().firstValue("Last-Modified").ifPresent(date -> source.setProperty("lastModified", date));
+        writeProperties(sourceFile, source);
+
+        evict(hash);
+        return new Result(hash, true, size);
+    }
+
+    public MappingSpreadsheet readSpreadsheet(File spreadsheet, SpreadsheetDiagnostics diagnostics)
+        throws IOException {
+        return readSpreadsheet(spreadsheet, diagnostics, null);
+    }
+
+    // Reads the spreadsheet from its snapshot if it has been parsed before, replaying the problems found then.
+    // Otherwise parses it on the pool, if any.
+    public MappingSpreadsheet readSpreadsheet(File spreadsheet, SpreadsheetDiagnostics diagnostics, ForkJoinPool pool)
+        throws IOException {
+        String hash = hash(spreadsheet.toPath());
+        Path snapshot = directory.resolve(SNAPSHOTS).resolve(hash + SPREADSHEET_SNAPSHOT);
+        if (Files.isRegularFile(snapshot)) {
+            SpreadsheetDiagnostics cachedDiagnostics = new SpreadsheetDiagnostics();
+            MappingSpreadsheet mappings = null;
+            try {
+                mappings = BinaryMappings.readSpreadsheet(Files.readAllBytes(snapshot), cachedDiagnostics);
+            } catch (IOException | RuntimeException e) {
+                // Unreadable or outdated, parse again below
+            }
+            if (mappings != null) {
+                touch(snapshot);
+                diagnostics.merge(cachedDiagnostics);
+                return mappings;
+            }
+        }
+
+        MappingSpreadsheet mappings = MappingSpreadsheet.read(spreadsheet, diagnostics, pool);
+        writeSnapshot(snapshot, out -> BinaryMappings.write(out, mappings, diagnostics));
+        evict(hash);
+        return mappings;
+    }
+
+    public MappingExport readExport(File export, Executor executor) throws IOException {
+        String hash = hash(export.toPath());
+        Path snapshot = directory.resolve(SNAPSHOTS).resolve(hash + EXPORT_SNAPSHOT);
+        if (Files.isRegularFile(snapshot)) {
+            try {
+                MappingExport mappings = BinaryMappings.readExport(Files.readAllBytes(snapshot));
+                touch(snapshot);
+                return mappings;
+            } catch (IOException | RuntimeException e) {
+                // Unreadable or outdated, parse again below
+            }
+        }
+
+        MappingExport mappings = MappingExport.read(export, executor);
+        writeSnapshot(snapshot, out -> BinaryMappings.write(out, mappings));
+        evict(hash);
+        return mappings;
+    }
+
+    private void writeSnapshot(Path snapshot, SnapshotWriter writer) throws IOException {
+        Files.createDirectories(snapshot.getParent());
+        Path temp = Files.createTempFile(snapshot.getParent(), "snapshot", ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            writer.write(out);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Deletes the least recently used blobs and snapshots until the cache fits, keeping those of the given hash
+    private synchronized void evict(String keepHash) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String kind : new String[] { BLOBS, SNAPSHOTS }) {
+            Path kindDirectory = directory.resolve(kind);
+            if (Files.isDirectory(kindDirectory)) {
+                try (Stream<Path> list = Files.list(kindDirectory)) {
+                    list.filter(path -> !path.getFileName().toString().endsWith(".tmp")).forEach(files::add);
+                }
+            }
+        }
+
+        long size = 0;
+        for (Path file : files) {
+            size += Files.size(file);
+        }
+        if (size <= maxSize) {
+            return;
+        }
+
+        files.sort(Comparator.comparing(DownloadCache::lastModified));
+        for (Path file : files) {
+            if (size <= maxSize) {
+                break;
+            }
+            if (!file.getFileName().toString().startsWith(keepHash)) {
+                size -= Files.size(file);
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + request.uri());
+        }
+    }
+
+    private static void touch(Path file) throws IOException {
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static Properties readProperties(Path file) throws IOException {
+        Properties properties = new Properties();
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    private static void writeProperties(Path file, Properties properties) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), "source", ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            properties.store(writer, null);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static String hash(Path file) throws IOException {
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(file), sha256())) {
+            byte[] buffer = new byte[65536];
+            //noinspection StatementWithEmptyBody
+            while (in.read(buffer) != -1) {
+            }
+            return hex(in.getMessageDigest().digest());
+        }
+    }
+
+    private static String hash(String text) {
+        return hex(sha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private interface SnapshotWriter {
+        void write(OutputStream out) throws IOException;
+    }
+
+    public static class Result {
+        private final String hash;
+        private final boolean transferred;
+        private final long bytesTransferred;
+
+        private Result(String hash, boolean transferred, long bytesTransferred) {
+            this.hash = hash;
+            this.transferred = transferred;
+            this.bytesTransferred = bytesTransferred;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        // False when the server reported the cached copy as still current
+        public boolean isTransferred() {
+            return transferred;
+        }
+
+        public long getBytesTransferred() {
+            return bytesTransferred;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Nested;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+// Generates one combined export per target, like GenerateCombinedExport, in a single run. Each distinct spreadsheet
+// and base export is parsed once and shared by every target using it; targets run concurrently on a bounded pool.
+@CacheableTask
+public class GenerateBatchExports extends DefaultTask {
+    private List<Target> targets = new ArrayList<>();
+    private String placeholderClassName;
+    private boolean allowUnvalidated;
+    private int maxSpreadsheetProblems = -1;
+    private int maxParallelTargets = Runtime.getRuntime().availableProcessors();
+    private boolean storeUncompressed;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private File downloadCache;
+    private long downloadCacheSize = Long.MAX_VALUE;
+
+    @Nested
+    public List<Target> getTargets() {
+        return targets;
+    }
+
+    public void setTargets(List<Target> targets) {
+        this.targets = targets;
+    }
+
+    public void target(String name, File spreadsheet, File baseExportZip, File output) {
+        targets.add(new Target(name, spreadsheet, baseExportZip, output));
+    }
+
+    @Input
+    @Optional
+    public String getPlaceholderClassName() {
+        return placeholderClassName;
+    }
+
+    public void setPlaceholderClassName(String placeholderClassName) {
+        this.placeholderClassName = placeholderClassName;
+    }
+
+    @Input
+    public boolean isAllowUnvalidated() {
+        return allowUnvalidated;
+    }
+
+    public void setAllowUnvalidated(boolean allowUnvalidated) {
+        this.allowUnvalidated = allowUnvalidated;
+    }
+
+    // Fails the task once a spreadsheet has more than this many problems, unless it's negative
+    @Input
+    public int getMaxSpreadsheetProblems() {
+        return maxSpreadsheetProblems;
+    }
+
+    public void setMaxSpreadsheetProblems(int maxSpreadsheetProblems) {
+        this.maxSpreadsheetProblems = maxSpreadsheetProblems;
+    }
+
+    // Size of the pool the spreadsheets and base exports are parsed, and the targets generated, on
+    @Internal
+    public int getMaxParallelTargets() {
+        return maxParallelTargets;
+    }
+
+    public void setMaxParallelTargets(int maxParallelTargets) {
+        this.maxParallelTargets = maxParallelTargets;
+    }
+
+    @Input
+    public boolean isStoreUncompressed() {
+        return storeUncompressed;
+    }
+
+    public void setStoreUncompressed(boolean storeUncompressed) {
+        this.storeUncompressed = storeUncompressed;
+    }
+
+    // Deflater level 0-9, or -1 for the default; ignored when storing uncompressed
+    @Input
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    // When set, parsed spreadsheets and base exports are cached in this directory (see DownloadCache)
+    @Internal
+    public File getDownloadCache() {
+        return downloadCache;
+    }
+
+    public void setDownloadCache(File downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    @Internal
+    public long getDownloadCacheSize() {
+        return downloadCacheSize;
+    }
+
+    public void setDownloadCacheSize(long downloadCacheSize) {
+        this.downloadCacheSize = downloadCacheSize;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        Set<File> outputs = new HashSet<>();
+        for (Target target : targets) {
+            if (!outputs.add(target.getOutput().getCanonicalFile())) {
+                throw new IllegalArgumentException("More than one batch target writes to " + target.getOutput());
+            }
+            prepareOutput(target.getOutput());
+        }
+
+        final Map<File, CompletableFuture<MappingSpreadsheet>> spreadsheets = new HashMap<>();
+        final Map<File, CompletableFuture<MappingExport>> baseExports = new HashMap<>();
+        final List<CompletableFuture<Void>> results = new ArrayList<>(targets.size());
+        final DownloadCache cache = downloadCache != null ? new DownloadCache(downloadCache, downloadCacheSize) : null;
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(maxParallelTargets,
+            targets.size())));
+        try {
+            for (Target target : targets) {
+                CompletableFuture<MappingSpreadsheet> spreadsheet = spreadsheets.computeIfAbsent(
+                    target.getSpreadsheet().getCanonicalFile(), file -> CompletableFuture.supplyAsync(() ->
+                        readSpreadsheet(cache, file), executor));
+                CompletableFuture<MappingExport> baseExport = baseExports.computeIfAbsent(
+                    target.getBaseExportZip().getCanonicalFile(), file -> CompletableFuture.supplyAsync(() ->
+                        readBaseExport(cache, file), executor));
+
+                results.add(spreadsheet.thenAcceptBothAsync(baseExport, (mappings, base) -> {
+                    long start = System.nanoTime();
+                    try {
+                        GenerateMappingExport.toExport(CombineMappings.combine(mappings, base, placeholderClassName,
+                            allowUnvalidated)).write(target.getOutput(), Runnable::run,
+                            storeUncompressed ? ZipEntry.STORED : ZipEntry.DEFLATED, compressionLevel);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    getLogger().lifecycle("Generated " + target.getName() + " in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+                }, executor));
+            }
+
+            try {
+                CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                } else if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        getLogger().lifecycle("Generated " + targets.size() + " exports from " + spreadsheets.size()
+            + " spreadsheets and " + baseExports.size() + " base exports");
+    }
+
+    private MappingSpreadsheet readSpreadsheet(DownloadCache cache, File spreadsheet) {
+        SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics(SpreadsheetDiagnostics.DEFAULT_SAMPLES,
+            maxSpreadsheetProblems);
+        MappingSpreadsheet mappings;
+        try {
+            mappings = cache != null ? cache.readSpreadsheet(spreadsheet, diagnostics)
+                : MappingSpreadsheet.read(spreadsheet, diagnostics);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!diagnostics.isEmpty()) {
+            getLogger().warn(spreadsheet.getName() + ": " + diagnostics.summary());
+        }
+        return mappings;
+    }
+
+    private static MappingExport readBaseExport(DownloadCache cache, File baseExport) {
+        try {
+            return cache != null ? cache.readExport(baseExport, Runnable::run) : MappingExport.read(baseExport);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void prepareOutput(File file) {
+        if (file.exists() && !file.delete()) {
+            getLogger().error("Unable to delete existing output at " + file);
+        }
+        if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + file);
+        }
+    }
+
+    public static class Target {
+        private final String name;
+        private final File spreadsheet;
+        private final File baseExportZip;
+        private final File output;
+
+        public Target(String name, File spreadsheet, File baseExportZip, File output) {
+            this.name = name;
+            this.spreadsheet = spreadsheet;
+            this.baseExportZip = baseExportZip;
+            this.output = output;
+        }
+
+        @Input
+        public String getName() {
+            return name;
+        }
+
+        @InputFile
+        @PathSensitive(PathSensitivity.NONE)
+        public File getSpreadsheet() {
+            return spreadsheet;
+        }
+
+        @InputFile
+        @PathSensitive(PathSensitivity.NONE)
+        public File getBaseExportZip() {
+            return baseExportZip;
+        }
+
+        @OutputFile
+        public File getOutput() {
+            return output;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.LocalState;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+// Runs CombineMappings and GenerateMappingExport back to back, handing over the merged model in memory
+@CacheableTask
+public class GenerateCombinedExport extends DefaultTask {
+    private File baseExportZip;
+    private File spreadsheet;
+    private String placeholderClassName;
+    private boolean allowUnvalidated;
+    private int maxSpreadsheetProblems = -1;
+    private boolean parallel;
+    private File baseExportCache;
+    private File downloadCache;
+    private long downloadCacheSize = Long.MAX_VALUE;
+    private boolean storeUncompressed;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private File output;
+    private File combinedOutput;
+    private List<File> upstreamMetrics;
+    private File metricsOutput;
+    private File diagnosticsOutput;
+    private int maxValidationProblems = -1;
+    private File validationOutput;
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getBaseExportZip() {
+        return baseExportZip;
+    }
+
+    public void setBaseExportZip(File baseExportZip) {
+        this.baseExportZip = baseExportZip;
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getSpreadsheet() {
+        return spreadsheet;
+    }
+
+    public void setSpreadsheet(File spreadsheet) {
+        this.spreadsheet = spreadsheet;
+    }
+
+    @Input
+    @Optional
+    public String getPlaceholderClassName() {
+        return placeholderClassName;
+    }
+
+    public void setPlaceholderClassName(String placeholderClassName) {
+        this.placeholderClassName = placeholderClassName;
+    }
+
+    @Input
+    public boolean isAllowUnvalidated() {
+        return allowUnvalidated;
+    }
+
+    public void setAllowUnvalidated(boolean allowUnvalidated) {
+        this.allowUnvalidated = allowUnvalidated;
+    }
+
+    // Fails the task once the spreadsheet has more than this many problems, unless it's negative
+    @Input
+    public int getMaxSpreadsheetProblems() {
+        return maxSpreadsheetProblems;
+    }
+
+    public void setMaxSpreadsheetProblems(int maxSpreadsheetProblems) {
+        this.maxSpreadsheetProblems = maxSpreadsheetProblems;
+    }
+
+    @Internal
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    // When set, the base export is read lazily through an extracted copy cached in this directory
+    @Internal
+    public File getBaseExportCache() {
+        return baseExportCache;
+    }
+
+    public void setBaseExportCache(File baseExportCache) {
+        this.baseExportCache = baseExportCache;
+    }
+
+    // When set, parsed spreadsheets and base exports are cached in this directory (see DownloadCache)
+    @Internal
+    public File getDownloadCache() {
+        return downloadCache;
+    }
+
+    public void setDownloadCache(File downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    @Internal
+    public long getDownloadCacheSize() {
+        return downloadCacheSize;
+    }
+
+    public void setDownloadCacheSize(long downloadCacheSize) {
+        this.downloadCacheSize = downloadCacheSize;
+    }
+
+    @Input
+    public boolean isStoreUncompressed() {
+        return storeUncompressed;
+    }
+
+    public void setStoreUncompressed(boolean storeUncompressed) {
+        this.storeUncompressed = storeUncompressed;
+    }
+
+    // Deflater level 0-9, or -1 for the default; ignored when storing uncompressed
+    @Input
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    // Optional copy of the combined spreadsheet, as written by CombineMappings, for debugging
+    @Optional
+    @OutputFile
+    public File getCombinedOutput() {
+        return combinedOutput;
+    }
+
+    public void setCombinedOutput(File combinedOutput) {
+        this.combinedOutput = combinedOutput;
+    }
+
+    // Metrics files written by the tasks feeding this one (the downloads), copied in front of this task's stages
+    @Internal
+    public List<File> getUpstreamMetrics() {
+        return upstreamMetrics;
+    }
+
+    public void setUpstreamMetrics(List<File> upstreamMetrics) {
+        this.upstreamMetrics = upstreamMetrics;
+    }
+
+    // Optional JSON file the per-stage metrics are written to; they are always logged. Not cached with the outputs:
+    // the timings are of the run that made them, so the file is deleted rather than restored when the outputs come
+    // from the build cache.
+    @Optional
+    @LocalState
+    public File getMetricsOutput() {
+        return metricsOutput;
+    }
+
+    public void setMetricsOutput(File metricsOutput) {
+        this.metricsOutput = metricsOutput;
+    }
+
+    // Optional JSON report of the problems found in the spreadsheet; they are always logged
+    @Optional
+    @OutputFile
+    public File getDiagnosticsOutput() {
+        return diagnosticsOutput;
+    }
+
+    public void setDiagnosticsOutput(File diagnosticsOutput) {
+        this.diagnosticsOutput = diagnosticsOutput;
+    }
+
+    // Fails the task once the combined mappings have more than this many errors, unless it's negative. Warnings, like
+    // methods sharing a name, don't count (see MappingValidator.Check)
+    @Input
+    public int getMaxValidationProblems() {
+        return maxValidationProblems;
+    }
+
+    public void setMaxValidationProblems(int maxValidationProblems) {
+        this.maxValidationProblems = maxValidationProblems;
+    }
+
+    // Optional JSON report of the problems found in the combined mappings; they are always logged
+    @Optional
+    @OutputFile
+    public File getValidationOutput() {
+        return validationOutput;
+    }
+
+    public void setValidationOutput(File validationOutput) {
+        this.validationOutput = validationOutput;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        prepareOutput(output);
+        if (combinedOutput != null) {
+            prepareOutput(combinedOutput);
+        }
+        if (metricsOutput != null) {
+            prepareOutput(metricsOutput);
+        }
+        if (diagnosticsOutput != null) {
+            prepareOutput(diagnosticsOutput);
+        }
+        if (validationOutput != null) {
+            prepareOutput(validationOutput);
+        }
+
+        final PipelineMetrics metrics = new PipelineMetrics();
+        if (upstreamMetrics != null) {
+            for (File upstream : upstreamMetrics) {
+                if (upstream.isFile()) {
+                    metrics.add(PipelineMetrics.read(upstream));
+                }
+            }
+        }
+
+        final ExecutorService executorService = parallel ? Executors.newFixedThreadPool(3, metrics.threadFactory())
+            : null;
+        final Executor executor = executorService != null ? executorService : Runnable::run;
+        // Rather than the common pool, whose threads the metrics don't see
+        final ForkJoinPool parsePool = parallel ? new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+            metrics.forkJoinThreadFactory(), null, false) : null;
+        final DownloadCache cache = downloadCache != null ? new DownloadCache(downloadCache, downloadCacheSize) : null;
+        try {
+            PipelineMetrics.Stage stage = metrics.start("parse spreadsheet");
+            final SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics(
+                SpreadsheetDiagnostics.DEFAULT_SAMPLES, maxSpreadsheetProblems);
+            final MappingSpreadsheet mappings;
+            try {
+                mappings = cache != null ? cache.readSpreadsheet(spreadsheet, diagnostics, parsePool)
+                    : MappingSpreadsheet.read(spreadsheet, diagnostics, parsePool);
+            } finally {
+                if (diagnosticsOutput != null) {
+                    diagnostics.write(diagnosticsOutput);
+                }
+            }
+            stage.rows(mappings.getMethods().size() + mappings.getFields().size() + mappings.getParams().size())
+                .bytesRead(spreadsheet.length()).stop();
+            if (!diagnostics.isEmpty()) {
+                getLogger().warn(diagnostics.summary());
+            }
+
+            final MappingSpreadsheet combined;
+            if (baseExportCache != null) {
+                stage = metrics.start("open base export");
+                LazyMappingExport baseExport = LazyMappingExport.open(baseExportZip, baseExportCache);
+                stage.rows(baseExport.getMethods().size() + baseExport.getFields().size()
+                    + baseExport.getParams().size()).bytesRead(baseExportZip.length()).stop();
+
+                stage = metrics.start("merge");
+                combined = CombineMappings.combine(mappings, baseExport, placeholderClassName, allowUnvalidated);
+            } else {
+                stage = metrics.start("parse base export");
+                MappingExport baseExport = cache != null ? cache.readExport(baseExportZip, executor)
+                    : MappingExport.read(baseExportZip, executor);
+                stage.rows(baseExport.getMethods().size() + baseExport.getFields().size()
+                    + baseExport.getParams().size()).bytesRead(baseExportZip.length()).stop();
+
+                stage = metrics.start("merge");
+                combined = CombineMappings.combine(mappings, baseExport, placeholderClassName, allowUnvalidated);
+            }
+            final MappingExport export = GenerateMappingExport.toExport(combined);
+            stage.rows(combined.getMethods().size() + combined.getFields().size() + combined.getParams().size())
+                .stop();
+
+            stage = metrics.start("validate");
+            final MappingValidator.Report validation = MappingValidator.validate(combined, placeholderClassName,
+                SpreadsheetDiagnostics.DEFAULT_SAMPLES, executor);
+            stage.rows(combined.getMethods().size() + combined.getFields().size() + combined.getParams().size())
+                .stop();
+            if (validationOutput != null) {
+                validation.write(validationOutput);
+            }
+            if (!validation.isEmpty()) {
+                getLogger().warn(validation.summary());
+            }
+            if (maxValidationProblems >= 0 && validation.getErrors() > maxValidationProblems) {
+                throw new RuntimeException("Combined mappings have more than " + maxValidationProblems
+                    + " errors");
+            }
+
+            if (combinedOutput != null) {
+                stage = metrics.start("write combined csv");
+                CombineMappings.write(combined, combinedOutput);
+                stage.rows(combined.getMethods().size() + combined.getFields().size() + combined.getParams().size())
+                    .bytesWritten(combinedOutput.length()).stop();
+            }
+
+            export.write(output, executor, storeUncompressed ? ZipEntry.STORED : ZipEntry.DEFLATED, compressionLevel,
+                metrics);
+        } finally {
+            if (executorService != null) {
+                executorService.shutdown();
+            }
+            if (parsePool != null) {
+                parsePool.shutdown();
+            }
+        }
+
+        metrics.log(getLogger());
+        if (metricsOutput != null) {
+            metrics.write(metricsOutput);
+        }
+    }
+
+    private void prepareOutput(File file) {
+        if (file.exists() && !file.delete()) {
+            getLogger().error("Unable to delete existing output at " + file);
+        }
+        if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + file);
+        }
+    }
+}
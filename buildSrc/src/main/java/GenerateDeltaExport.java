@@ -0,0 +1,66 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+
+@CacheableTask
+public class GenerateDeltaExport extends DefaultTask {
+    private File previousExport;
+    private File currentExport;
+    private File output;
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getPreviousExport() {
+        return previousExport;
+    }
+
+    public void setPreviousExport(File previousExport) {
+        this.previousExport = previousExport;
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getCurrentExport() {
+        return currentExport;
+    }
+
+    public void setCurrentExport(File currentExport) {
+        this.currentExport = currentExport;
+    }
+
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        if (output.exists() && !output.delete()) {
+            getLogger().error("Unable to delete existing output at " + output);
+        }
+        if (output.getParentFile() != null && !output.getParentFile().exists() && !output.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + output);
+        }
+
+        final MappingDelta delta = MappingDelta.between(MappingExport.read(previousExport),
+            MappingExport.read(currentExport));
+        delta.write(output);
+
+        getLogger().lifecycle("Delta against " + previousExport.getName() + ": " + delta.getChanged().getMethods().size()
+            + " methods, " + delta.getChanged().getFields().size() + " fields and "
+            + delta.getChanged().getParams().size() + " params added or changed; " + delta.getRemovedMethods().size()
+            + " methods, " + delta.getRemovedFields().size() + " fields and " + delta.getRemovedParams().size()
+            + " params removed");
+    }
+}
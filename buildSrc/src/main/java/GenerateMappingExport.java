@@ -1,17 +1,86 @@
 import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
 
+@CacheableTask
 public class GenerateMappingExport extends DefaultTask {
-    @Input File spreadsheet;
+    private File spreadsheet;
+    private int maxSpreadsheetProblems = -1;
+    private boolean parallel;
+    private boolean storeUncompressed;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private File output;
 
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getSpreadsheet() {
+        return spreadsheet;
+    }
+
+    public void setSpreadsheet(File spreadsheet) {
+        this.spreadsheet = spreadsheet;
+    }
+
+    // Fails the task once the spreadsheet has more than this many problems, unless it's negative
+    @Input
+    public int getMaxSpreadsheetProblems() {
+        return maxSpreadsheetProblems;
+    }
+
+    public void setMaxSpreadsheetProblems(int maxSpreadsheetProblems) {
+        this.maxSpreadsheetProblems = maxSpreadsheetProblems;
+    }
+
+    @Internal
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    @Input
+    public boolean isStoreUncompressed() {
+        return storeUncompressed;
+    }
+
+    public void setStoreUncompressed(boolean storeUncompressed) {
+        this.storeUncompressed = storeUncompressed;
+    }
+
+    // Deflater level 0-9, or -1 for the default; ignored when storing uncompressed
     @Input
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
     @OutputFile
-    File output;
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
 
     @TaskAction
     public void act() throws IOException {
@@ -22,24 +91,54 @@ public class GenerateMappingExport extends DefaultTask {
             getLogger().error("Unable to create parent directories for " + output);
         }
 
-        final MappingSpreadsheet mappings = MappingSpreadsheet.read(spreadsheet);
-        final MappingExport export = new MappingExport();
+        final SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics(SpreadsheetDiagnostics.DEFAULT_SAMPLES,
+            maxSpreadsheetProblems);
+        final MappingSpreadsheet mappings = BinaryMappings.isBinary(spreadsheet)
+            ? BinaryMappings.readSpreadsheet(spreadsheet, diagnostics)
+            : MappingSpreadsheet.read(spreadsheet, diagnostics, parallel ? ForkJoinPool.commonPool() : null);
+        if (!diagnostics.isEmpty()) {
+            getLogger().warn(diagnostics.summary());
+        }
+        final MappingExport export = toExport(mappings);
+
+        final int compressionMethod = storeUncompressed ? ZipEntry.STORED : ZipEntry.DEFLATED;
+        if (parallel) {
+            ExecutorService executor = Executors.newFixedThreadPool(3);
+            try {
+                export.write(output, executor, compressionMethod, compressionLevel);
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            export.write(output, Runnable::run, compressionMethod, compressionLevel);
+        }
+    }
+
+    public static MappingExport toExport(MappingSpreadsheet mappings) {
+        final MappingExport export = new MappingExport(mappings.getMethods().size(), mappings.getFields().size(),
+            mappings.getParams().size());
 
         for (MappingSpreadsheet.Entry field : mappings.getFields().values()) {
-            export.addField(field.getUnmappedName(), new MappingExport.MemberEntry(field.getUnmappedName(),
-                field.getMappedName(), field.getSide(), field.getJavadocComment()));
+            export.addField(field.getUnmappedName(), toMemberEntry(field));
         }
 
         for (MappingSpreadsheet.Entry method : mappings.getMethods().values()) {
-            export.addMethod(method.getUnmappedName(), new MappingExport.MemberEntry(method.getUnmappedName(),
-                method.getMappedName(), method.getSide(), method.getJavadocComment()));
+            export.addMethod(method.getUnmappedName(), toMemberEntry(method));
         }
 
         for (MappingSpreadsheet.Entry param : mappings.getParams().values()) {
-            export.addParam(param.getUnmappedName(), new MappingExport.ParamEntry(param.getUnmappedName(),
-                param.getMappedName(), param.getSide()));
+            export.addParam(param.getUnmappedName(), toParamEntry(param));
         }
 
-        export.write(output);
+        return export;
+    }
+
+    static MappingExport.MemberEntry toMemberEntry(MappingSpreadsheet.Entry entry) {
+        return new MappingExport.MemberEntry(entry.getUnmappedName(), entry.getMappedName(), entry.getSide(),
+            entry.getJavadocComment());
+    }
+
+    static MappingExport.ParamEntry toParamEntry(MappingSpreadsheet.Entry entry) {
+        return new MappingExport.ParamEntry(entry.getUnmappedName(), entry.getMappedName(), entry.getSide());
     }
-}
\ No newline at end of file
+}
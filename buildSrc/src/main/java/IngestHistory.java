@@ -0,0 +1,81 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+// Adds a day's export to a MappingHistory. A delta zip from GenerateDeltaExport is added as it is, which only
+// reads the changes, as long as it was made against the last day's export; any other mappings are compared against
+// the last day first.
+public class IngestHistory extends DefaultTask {
+    private File history;
+    private File mappings;
+    private String day;
+
+    public IngestHistory() {
+        // The history is appended to, so it's neither a plain input nor a plain output
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @Internal
+    public File getHistory() {
+        return history;
+    }
+
+    public void setHistory(File history) {
+        this.history = history;
+    }
+
+    // An export zip, a delta zip, binary mappings, or a spreadsheet CSV
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getMappings() {
+        return mappings;
+    }
+
+    public void setMappings(File mappings) {
+        this.mappings = mappings;
+    }
+
+    // The day the mappings are from, as yyyyMMdd; must be after every day already in the history
+    @Input
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        final LocalDate date = LocalDate.parse(day, DateTimeFormatter.BASIC_ISO_DATE);
+        final long start = System.nanoTime();
+        final MappingHistory mappingHistory = MappingHistory.open(history);
+        final long opened = System.nanoTime();
+
+        final MappingDelta delta;
+        if (mappings.getName().endsWith(".zip") && MappingDelta.isDelta(mappings)) {
+            delta = MappingDelta.read(mappings);
+            mappingHistory.ingest(delta, date);
+        } else {
+            delta = mappingHistory.ingest(CompareCSVs.load(mappings), date);
+        }
+        final long end = System.nanoTime();
+
+        getLogger().lifecycle("Added " + date + " to the history of " + (mappingHistory.getDates().size() - 1)
+            + " days in " + (end - opened) / 1_000_000 + " ms, after opening it in " + (opened - start) / 1_000_000
+            + " ms: " + delta.getChanged().getMethods().size() + " methods, " + delta.getChanged().getFields().size()
+            + " fields and " + delta.getChanged().getParams().size() + " params added or changed; "
+            + delta.getRemovedMethods().size() + " methods, " + delta.getRemovedFields().size() + " fields and "
+            + delta.getRemovedParams().size() + " params removed. The history is now " + history.length()
+            + " bytes");
+    }
+}
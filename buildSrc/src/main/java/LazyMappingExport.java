@@ -0,0 +1,371 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Read-only view of an export zip whose CSVs are extracted once into a cache directory keyed by the zip's hash,
+// memory-mapped, and indexed by SRG id. Rows are only decoded into entries when asked for. Of rows repeating a name
+// the last is used, as MappingExport.read would.
+public class LazyMappingExport {
+    private final Table methods;
+    private final Table fields;
+    private final Table params;
+
+    private LazyMappingExport(Table methods, Table fields, Table params) {
+        this.methods = methods;
+        this.fields = fields;
+        this.params = params;
+    }
+
+    public Table getMethods() {
+        return methods;
+    }
+
+    public Table getFields() {
+        return fields;
+    }
+
+    public Table getParams() {
+        return params;
+    }
+
+    public boolean hasMethod(String name) {
+        return methods.find(name) >= 0;
+    }
+
+    public boolean hasField(String name) {
+        return fields.find(name) >= 0;
+    }
+
+    public boolean hasParam(String name) {
+        return params.find(name) >= 0;
+    }
+
+    public MappingExport.MemberEntry getMethod(String name) {
+        int row = methods.find(name);
+        return row < 0 ? null : methods.memberEntry(row);
+    }
+
+    public MappingExport.MemberEntry getField(String name) {
+        int row = fields.find(name);
+        return row < 0 ? null : fields.memberEntry(row);
+    }
+
+    public MappingExport.ParamEntry getParam(String name) {
+        int row = params.find(name);
+        return row < 0 ? null : params.paramEntry(row);
+    }
+
+    public static LazyMappingExport open(File export, File cacheDirectory) {
+        try {
+            Path directory = cacheDirectory.toPath().resolve(DownloadCache.hash(export.toPath()));
+            if (!Files.isRegularFile(directory.resolve(MappingExport.PARAMS_CSV))) {
+                extract(export, directory);
+            }
+
+            return new LazyMappingExport(
+                Table.map(directory.resolve(MappingExport.METHODS_CSV)),
+                Table.map(directory.resolve(MappingExport.FIELDS_CSV)),
+                Table.map(directory.resolve(MappingExport.PARAMS_CSV)));
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mappings export file", e);
+        }
+    }
+
+    // params.csv is moved into place last, so its presence marks a complete extraction
+    private static void extract(File export, Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (ZipFile zip = new ZipFile(export)) {
+            for (String name : new String[] { MappingExport.METHODS_CSV, MappingExport.FIELDS_CSV,
+                MappingExport.PARAMS_CSV }) {
+                ZipEntry entry = zip.getEntry(name);
+                if (entry == null) {
+                    throw new IOException("Missing " + name + " in " + export);
+                }
+
+                Path temp = Files.createTempFile(directory, name, ".tmp");
+                try (InputStream in = zip.getInputStream(entry)) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(temp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    public static class Table {
+        private final ByteBuffer data;
+        private final int[] offsets; // start of each row, plus the end of the data
+        private final int[] ids;
+        private final int[] table; // row + 1, or 0 for an empty slot
+        private final BitSet shadowed; // rows repeated by a later one
+        private final int rows;
+
+        private Table(ByteBuffer data, int[] offsets, int[] ids, int rows) {
+            this.data = data;
+            this.offsets = offsets;
+            this.ids = ids;
+            this.rows = rows;
+            this.table = new int[Integer.highestOneBit(Math.max(8, rows) * 2 - 1) << 1];
+            this.shadowed = new BitSet(rows);
+
+            int mask = table.length - 1;
+            for (int row = 0; row < rows; row++) {
+                int slot = SrgMap.hash(ids[row]) & mask;
+                int other;
+                while ((other = table[slot]) != 0) {
+                    if (ids[other - 1] == ids[row] && namesEqual(other - 1, row)) {
+                        shadowed.set(other - 1);
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = row + 1;
+            }
+        }
+
+        static Table map(Path csv) throws IOException {
+            MappedByteBuffer data;
+            try (FileChannel channel = FileChannel.open(csv)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+
+            int limit = data.limit();
+            int[] offsets = new int[Math.max(16, limit / 32)];
+            int[] ids = new int[offsets.length];
+            int rows = 0;
+            int position = nextRow(data, 0); // Skip header
+            while (position < limit) {
+                if (rows + 1 >= offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    ids = Arrays.copyOf(ids, offsets.length);
+                }
+                offsets[rows] = position;
+                ids[rows] = parseId(data, position);
+                rows++;
+                position = nextRow(data, position);
+            }
+            offsets[rows] = limit;
+
+            return new Table(data, offsets, ids, rows);
+        }
+
+        public int size() {
+            return rows;
+        }
+
+        public int srgId(int row) {
+            return ids[row];
+        }
+
+        // Whether a later row has the same name, and so replaces this one
+        public boolean isShadowed(int row) {
+            return shadowed.get(row);
+        }
+
+        public String unmappedName(int row) {
+            int start = offsets[row];
+            return decode(start, fieldEnd(start));
+        }
+
+        public int find(String name) {
+            return find(SrgNames.parseId(name), name);
+        }
+
+        public int find(int id, String name) {
+            int mask = table.length - 1;
+            int slot = SrgMap.hash(id) & mask;
+            int row;
+            while ((row = table[slot]) != 0) {
+                if (ids[row - 1] == id && nameEquals(row - 1, name)) {
+                    return row - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        public MappingExport.MemberEntry memberEntry(int row) {
+            String[] line = decodeRow(row, 4);
+            return new MappingExport.MemberEntry(line[0], line[1], Side.from(Integer.parseInt(line[2])), line[3]);
+        }
+
+        public MappingExport.ParamEntry paramEntry(int row) {
+            String[] line = decodeRow(row, 3);
+            return new MappingExport.ParamEntry(line[0], line[1], Side.from(Integer.parseInt(line[2])));
+        }
+
+        // Unquoted first field, compared byte by byte without decoding
+        private boolean nameEquals(int row, String name) {
+            int start = offsets[row];
+            int end = fieldEnd(start);
+            if (end - start != name.length()) {
+                return false;
+            }
+            for (int i = 0; i < name.length(); i++) {
+                if (data.get(start + i) != name.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean namesEqual(int row, int otherRow) {
+            int start = offsets[row];
+            int length = fieldEnd(start) - start;
+            int otherStart = offsets[otherRow];
+            if (fieldEnd(otherStart) - otherStart != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (data.get(start + i) != data.get(otherStart + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int fieldEnd(int position) {
+            int limit = offsets[rows];
+            while (position < limit) {
+                byte b = data.get(position);
+                if (b == ',' || b == '\n' || b == '\r') {
+                    break;
+                }
+                position++;
+            }
+            return position;
+        }
+
+        // Splits a row the same way MappingExport.read's CSVReader does: quotes with doubled or backslash-escaped
+        // quotes inside, and any missing trailing fields read as empty
+        private String[] decodeRow(int row, int columns) {
+            String[] line = new String[columns];
+            Arrays.fill(line, "");
+            int end = offsets[row + 1];
+            byte[] field = new byte[Math.max(0, end - offsets[row])];
+            int column = 0;
+            int length = 0;
+            boolean quoted = false;
+            for (int position = offsets[row]; position < end; position++) {
+                byte b = data.get(position);
+                if (quoted) {
+                    if (b == '\\' && position + 1 < end && (data.get(position + 1) == '"' || data.get(position + 1) == '\\')) {
+                        field[length++] = data.get(++position);
+                    } else if (b == '"' && position + 1 < end && data.get(position + 1) == '"') {
+                        field[length++] = '"';
+                        position++;
+                    } else if (b == '"') {
+                        quoted = false;
+                    } else {
+                        field[length++] = b;
+                    }
+                } else if (b == '"') {
+                    quoted = true;
+                } else if (b == ',' || b == '\n' || b == '\r') {
+                    if (column < columns) {
+                        line[column] = new String(field, 0, length, StandardCharsets.UTF_8);
+                    }
+                    column++;
+                    length = 0;
+                    if (b != ',') {
+                        break;
+                    }
+                } else {
+                    field[length++] = b;
+                }
+            }
+            if (length > 0 && column < columns) {
+                line[column] = new String(field, 0, length, StandardCharsets.UTF_8);
+            }
+            return line;
+        }
+
+        private String decode(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = data.get(start + i);
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Start of the row after the one at position, skipping line breaks inside quoted fields
+        private static int nextRow(ByteBuffer data, int position) {
+            int limit = data.limit();
+            boolean quoted = false;
+            while (position < limit) {
+                byte b = data.get(position++);
+                if (quoted) {
+                    if (b == '\\' && position < limit && (data.get(position) == '"' || data.get(position) == '\\')) {
+                        position++;
+                    } else if (b == '"') {
+                        quoted = false;
+                    }
+                } else if (b == '"') {
+                    quoted = true;
+                } else if (b == '\n') {
+                    break;
+                } else if (b == '\r') {
+                    if (position < limit && data.get(position) == '\n') {
+                        position++;
+                    }
+                    break;
+                }
+            }
+            return position;
+        }
+
+        // Same result as SrgNames.parseId on the decoded first field
+        private static int parseId(ByteBuffer data, int position) {
+            int start;
+            if (startsWith(data, position, "func_")) {
+                start = position + 5;
+            } else if (startsWith(data, position, "field_")) {
+                start = position + 6;
+            } else if (startsWith(data, position, "p_")) {
+                start = position + 2;
+                if (start < data.limit() && data.get(start) == 'i') {
+                    start++;
+                }
+            } else {
+                return SrgNames.NO_ID;
+            }
+
+            int id = 0;
+            int i = start;
+            for (int limit = data.limit(); i < limit; i++) {
+                byte b = data.get(i);
+                if (b < '0' || b > '9') {
+                    break;
+                }
+                if (id > (Integer.MAX_VALUE - 9) / 10) {
+                    return SrgNames.NO_ID;
+                }
+                id = id * 10 + (b - '0');
+            }
+            return i == start ? SrgNames.NO_ID : id;
+        }
+
+        private static boolean startsWith(ByteBuffer data, int position, String prefix) {
+            if (position + prefix.length() > data.limit()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (data.get(position + i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
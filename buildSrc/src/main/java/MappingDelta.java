@@ -0,0 +1,217 @@
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// The rows added or changed (as a partial export) and removed between two exports.
+// Written as a zip holding the partial methods/fields/params CSVs plus one list of removed names per CSV, and the
+// digests (see MappingExport.digest) of the exports it was made between, so it's only applied to the export it was
+// made against.
+public class MappingDelta {
+    public static final String REMOVED_METHODS_CSV = "methods-removed.csv";
+    public static final String REMOVED_FIELDS_CSV = "fields-removed.csv";
+    public static final String REMOVED_PARAMS_CSV = "params-removed.csv";
+
+    public static final String DIGESTS_CSV = "digests.csv";
+
+    public static final String REMOVED_CSV_HEADER = "searge";
+
+    private final MappingExport changed;
+    private final Set<String> removedMethods = new HashSet<>();
+    private final Set<String> removedFields = new HashSet<>();
+    private final Set<String> removedParams = new HashSet<>();
+    private long baseDigest;
+    private long resultDigest;
+
+    private MappingDelta() {
+        this(new MappingExport());
+    }
+
+    private MappingDelta(MappingExport changed) {
+        this.changed = changed;
+    }
+
+    public MappingExport getChanged() {
+        return changed;
+    }
+
+    public Set<String> getRemovedMethods() {
+        return removedMethods;
+    }
+
+    public Set<String> getRemovedFields() {
+        return removedFields;
+    }
+
+    public Set<String> getRemovedParams() {
+        return removedParams;
+    }
+
+    // Digest of the export the delta was made against
+    public long getBaseDigest() {
+        return baseDigest;
+    }
+
+    // Digest of the export the delta makes
+    public long getResultDigest() {
+        return resultDigest;
+    }
+
+    public boolean isEmpty() {
+        return changed.getMethods().isEmpty() && changed.getFields().isEmpty() && changed.getParams().isEmpty()
+            && removedMethods.isEmpty() && removedFields.isEmpty() && removedParams.isEmpty();
+    }
+
+    public static MappingDelta between(MappingExport previous, MappingExport current) {
+        MappingDelta delta = new MappingDelta();
+        CompareCSVs.compare(previous, current, (type, change, oldEntry, newEntry) -> {
+            if (change == CompareCSVs.ChangeType.REMOVED) {
+                delta.removed(type).add(oldEntry.getUnmappedName());
+            } else if (type == MappingType.METHOD) {
+                delta.changed.addMethod(newEntry.getUnmappedName(), (MappingExport.MemberEntry) newEntry);
+            } else if (type == MappingType.FIELD) {
+                delta.changed.addField(newEntry.getUnmappedName(), (MappingExport.MemberEntry) newEntry);
+            } else {
+                delta.changed.addParam(newEntry.getUnmappedName(), (MappingExport.ParamEntry) newEntry);
+            }
+        });
+        delta.baseDigest = previous.digest();
+        delta.resultDigest = current.digest();
+        return delta;
+    }
+
+    public MappingExport apply(MappingExport base) {
+        if (base.digest() != baseDigest) {
+            throw new IllegalArgumentException("The delta was made against a different export, with digest "
+                + Long.toHexString(baseDigest) + " rather than " + Long.toHexString(base.digest()));
+        }
+        MappingExport result = new MappingExport(base.getMethods().size(), base.getFields().size(),
+            base.getParams().size());
+
+        for (MappingExport.MemberEntry method : base.getMethods().values()) {
+            if (!removedMethods.contains(method.getUnmappedName())) {
+                result.addMethod(method.getUnmappedName(), method);
+            }
+        }
+        for (MappingExport.MemberEntry field : base.getFields().values()) {
+            if (!removedFields.contains(field.getUnmappedName())) {
+                result.addField(field.getUnmappedName(), field);
+            }
+        }
+        for (MappingExport.ParamEntry param : base.getParams().values()) {
+            if (!removedParams.contains(param.getUnmappedName())) {
+                result.addParam(param.getUnmappedName(), param);
+            }
+        }
+
+        for (MappingExport.MemberEntry method : changed.getMethods().values()) {
+            result.addMethod(method.getUnmappedName(), method);
+        }
+        for (MappingExport.MemberEntry field : changed.getFields().values()) {
+            result.addField(field.getUnmappedName(), field);
+        }
+        for (MappingExport.ParamEntry param : changed.getParams().values()) {
+            result.addParam(param.getUnmappedName(), param);
+        }
+
+        return result;
+    }
+
+    private Set<String> removed(MappingType type) {
+        switch (type) {
+            case METHOD:
+                return removedMethods;
+            case FIELD:
+                return removedFields;
+            default:
+                return removedParams;
+        }
+    }
+
+    public void write(File output) throws IOException {
+        try (ZipOutputStream zip = MappingExport.openZip(output, Deflater.DEFAULT_COMPRESSION)) {
+            changed.write(zip, Runnable::run, ZipEntry.DEFLATED);
+            writeRemoved(zip, REMOVED_METHODS_CSV, removedMethods);
+            writeRemoved(zip, REMOVED_FIELDS_CSV, removedFields);
+            writeRemoved(zip, REMOVED_PARAMS_CSV, removedParams);
+            CsvBuffer csv = new CsvBuffer();
+            csv.field("base").separator().field("result").newLine();
+            csv.field(Long.toHexString(baseDigest)).separator().field(Long.toHexString(resultDigest)).newLine();
+            MappingExport.writeEntry(zip, DIGESTS_CSV, csv, ZipEntry.DEFLATED);
+        }
+    }
+
+    private static void writeRemoved(ZipOutputStream zip, String name, Set<String> removed) throws IOException {
+        List<String> sorted = new ArrayList<>(removed);
+        sorted.sort(null);
+
+        CsvBuffer csv = new CsvBuffer();
+        csv.field(REMOVED_CSV_HEADER).newLine();
+        for (String unmappedName : sorted) {
+            csv.field(unmappedName).newLine();
+        }
+        MappingExport.writeEntry(zip, name, csv, ZipEntry.DEFLATED);
+    }
+
+    // Whether the zip is a delta rather than a full export
+    public static boolean isDelta(File zip) {
+        try (FileSystem fs = FileSystems.newFileSystem(zip.toPath())) {
+            return Files.exists(fs.getPath(REMOVED_METHODS_CSV));
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mappings delta file", e);
+        }
+    }
+
+    public static MappingDelta read(File delta) {
+        MappingDelta mappings = new MappingDelta(MappingExport.read(delta));
+
+        try (FileSystem fs = FileSystems.newFileSystem(delta.toPath())) {
+            readRemoved(fs, REMOVED_METHODS_CSV, mappings.removedMethods);
+            readRemoved(fs, REMOVED_FIELDS_CSV, mappings.removedFields);
+            readRemoved(fs, REMOVED_PARAMS_CSV, mappings.removedParams);
+            readDigests(fs, mappings);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mappings delta file", e);
+        }
+
+        return mappings;
+    }
+
+    private static void readRemoved(FileSystem fs, String name, Set<String> removed) throws IOException {
+        try (CSVReader reader = new CSVReader(Files.newBufferedReader(fs.getPath(name)))) {
+            reader.readNext(); // Skip header
+
+            for (String[] line : reader) {
+                removed.add(line[0]);
+            }
+        } catch (CsvValidationException e) {
+            throw new RuntimeException("Exception while reading " + name, e);
+        }
+    }
+
+    private static void readDigests(FileSystem fs, MappingDelta delta) throws IOException {
+        try (CSVReader reader = new CSVReader(Files.newBufferedReader(fs.getPath(DIGESTS_CSV)))) {
+            reader.readNext(); // Skip header
+
+            String[] line = reader.readNext();
+            if (line == null || line.length != 2) {
+                throw new IOException("Expected the base and result digests in " + DIGESTS_CSV);
+            }
+            delta.baseDigest = Long.parseUnsignedLong(line[0], 16);
+            delta.resultDigest = Long.parseUnsignedLong(line[1], 16);
+        } catch (CsvValidationException | NumberFormatException e) {
+            throw new RuntimeException("Exception while reading " + DIGESTS_CSV, e);
+        }
+    }
+}
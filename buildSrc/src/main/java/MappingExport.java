@@ -1,18 +1,25 @@
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class MappingExport {
     public static final String PARAMS_CSV = "params.csv";
@@ -23,17 +30,22 @@ public class MappingExport {
     public static final String[] FIELDS_CSV_HEADER = { "searge", "name", "side", "desc" };
     public static final String[] PARAMS_CSV_HEADER = { "func", "name", "side" };
 
-    private static final Map<String, Object> FS_OPTIONS = new HashMap<>();
+    // Rough sizes of an export row, used to size the maps up front from the uncompressed CSV sizes
+    private static final int AVERAGE_MEMBER_ROW_LENGTH = 48;
+    private static final int AVERAGE_PARAM_ROW_LENGTH = 24;
 
-    static {
-        FS_OPTIONS.put("create", "true");
-    }
-
-    private final Map<String, MemberEntry> methods = new LinkedHashMap<>(3000);
-    private final Map<String, MemberEntry> fields = new LinkedHashMap<>(3000);
-    private final Map<String, ParamEntry> params = new LinkedHashMap<>(3000);
+    private final SrgMap<MemberEntry> methods;
+    private final SrgMap<MemberEntry> fields;
+    private final SrgMap<ParamEntry> params;
 
     public MappingExport() {
+        this(0, 0, 0);
+    }
+
+    public MappingExport(int expectedMethods, int expectedFields, int expectedParams) {
+        this.methods = new SrgMap<>(expectedMethods);
+        this.fields = new SrgMap<>(expectedFields);
+        this.params = new SrgMap<>(expectedParams);
     }
 
     public void addMethod(String name, MemberEntry newEntry) {
@@ -60,6 +72,18 @@ public class MappingExport {
         return this.params.containsKey(name);
     }
 
+    public boolean hasMethod(int srgId, String name) {
+        return this.methods.contains(srgId, name);
+    }
+
+    public boolean hasField(int srgId, String name) {
+        return this.fields.contains(srgId, name);
+    }
+
+    public boolean hasParam(int srgId, String name) {
+        return this.params.contains(srgId, name);
+    }
+
     public MemberEntry getMethod(String name) {
         return this.methods.get(name);
     }
@@ -84,9 +108,56 @@ public class MappingExport {
         return params;
     }
 
+    // Identity of the rows, the same for exports with equal rows whatever order they were added in: the sum of a
+    // 64-bit hash of each row. Rows with a blank mapped name aren't written, so they're left out here too, and an
+    // export digests the same as the zip written from it. Lets a delta check that it's applied to the export it was
+    // made against.
+    public long digest() {
+        long digest = 0;
+        for (MemberEntry method : methods.values()) {
+            digest += digestIfWritten(MappingType.METHOD, method);
+        }
+        for (MemberEntry field : fields.values()) {
+            digest += digestIfWritten(MappingType.FIELD, field);
+        }
+        for (ParamEntry param : params.values()) {
+            digest += digestIfWritten(MappingType.PARAM, param);
+        }
+        return digest;
+    }
+
+    private static long digestIfWritten(MappingType type, Entry entry) {
+        return entry.getMappedName().isBlank() ? 0 : digest(type, entry);
+    }
+
+    // FNV-1a over the type and each column, length first, then mixed so the sum of many stays well spread
+    static long digest(MappingType type, Entry entry) {
+        long hash = 0xCBF29CE484222325L;
+        hash = (hash ^ type.ordinal()) * 0x100000001B3L;
+        hash = digest(hash, entry.getUnmappedName());
+        hash = digest(hash, entry.getMappedName());
+        hash = (hash ^ entry.getSide().toNumber()) * 0x100000001B3L;
+        if (entry instanceof MemberEntry) {
+            hash = digest(hash, ((MemberEntry) entry).getJavadoc());
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    private static long digest(long hash, String value) {
+        hash = (hash ^ value.length()) * 0x100000001B3L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
     public interface Entry {
         String getUnmappedName();
 
+        int getSrgId();
+
         String getMappedName();
 
         Side getSide();
@@ -97,18 +168,24 @@ public class MappingExport {
         private final String mappedName;
         private final Side side;
         private final String javadoc;
+        private final int srgId;
 
         public MemberEntry(String unmappedName, String mappedName, Side side, String javadoc) {
             this.unmappedName = unmappedName;
             this.mappedName = mappedName;
             this.side = side;
             this.javadoc = javadoc;
+            this.srgId = SrgNames.parseId(unmappedName);
         }
 
         public String getUnmappedName() {
             return unmappedName;
         }
 
+        public int getSrgId() {
+            return srgId;
+        }
+
         public String getMappedName() {
             return mappedName;
         }
@@ -126,17 +203,23 @@ public class MappingExport {
         private final String unmappedName;
         private final String mappedName;
         private final Side side;
+        private final int srgId;
 
         public ParamEntry(String unmappedName, String mappedName, Side side) {
             this.unmappedName = unmappedName;
             this.mappedName = mappedName;
             this.side = side;
+            this.srgId = SrgNames.parseId(unmappedName);
         }
 
         public String getUnmappedName() {
             return unmappedName;
         }
 
+        public int getSrgId() {
+            return srgId;
+        }
+
         public String getMappedName() {
             return mappedName;
         }
@@ -147,110 +230,190 @@ public class MappingExport {
     }
 
     public void write(File output) throws IOException {
-        try (FileSystem fs = FileSystems.newFileSystem(output.toPath(), FS_OPTIONS)) {
-
-            // functions/methods file
-            try (BufferedWriter writer = Files.newBufferedWriter(fs.getPath(METHODS_CSV))) {
-                writer.write(String.join(",", METHODS_CSV_HEADER));
-                writer.newLine();
-
-                List<MemberEntry> methods = new ArrayList<>(this.methods.values());
-                methods.sort(Comparator.comparing(MemberEntry::getUnmappedName));
-
-                for (MemberEntry func : methods) {
-                    if (!func.getMappedName().isBlank()) {
-                        writer.write(String.join(",", new String[] {
-                            func.getUnmappedName(), func.getMappedName(), Integer.toString(func.getSide().toNumber()),
-                            func.getJavadoc()
-                        }));
-                        writer.newLine();
-                    }
-                }
-            }
+        write(output, Runnable::run);
+    }
 
-            // fields file
-            try (BufferedWriter writer = Files.newBufferedWriter(fs.getPath(FIELDS_CSV))) {
-                writer.write(String.join(",", FIELDS_CSV_HEADER));
-                writer.newLine();
-
-                List<MemberEntry> fields = new ArrayList<>(this.fields.values());
-                fields.sort(Comparator.comparing(MemberEntry::getUnmappedName));
-
-                for (MemberEntry field : fields) {
-                    if (!field.getMappedName().isBlank()) {
-                        writer.write(String.join(",", new String[] {
-                            field.getUnmappedName(), field.getMappedName(), Integer.toString(field.getSide().toNumber()),
-                            field.getJavadoc()
-                        }));
-                        writer.newLine();
-                    }
-                }
+    public void write(File output, Executor executor) throws IOException {
+        write(output, executor, ZipEntry.DEFLATED, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    // compressionMethod is either ZipEntry.STORED or ZipEntry.DEFLATED, compressionLevel only applies to the latter
+    public void write(File output, Executor executor, int compressionMethod, int compressionLevel) throws IOException {
+        try (ZipOutputStream zip = openZip(output, compressionLevel)) {
+            write(zip, executor, compressionMethod);
+        }
+    }
+
+    // The three files are sorted and encoded as separate tasks on the executor, then stored in the zip in order
+    void write(ZipOutputStream zip, Executor executor, int compressionMethod) throws IOException {
+        CompletableFuture<CsvBuffer> methods = CompletableFuture.supplyAsync(() -> encodeMembers(METHODS_CSV_HEADER,
+            sortMembers(this.methods.values())), executor);
+        CompletableFuture<CsvBuffer> fields = CompletableFuture.supplyAsync(() -> encodeMembers(FIELDS_CSV_HEADER,
+            sortMembers(this.fields.values())), executor);
+        CompletableFuture<CsvBuffer> params = CompletableFuture.supplyAsync(() -> encodeParams(PARAMS_CSV_HEADER,
+            sortParams(this.params.values())), executor);
+
+        writeEntry(zip, METHODS_CSV, await(methods), compressionMethod);
+        writeEntry(zip, FIELDS_CSV, await(fields), compressionMethod);
+        writeEntry(zip, PARAMS_CSV, await(params), compressionMethod);
+    }
+
+    // Same output as write(File, Executor, int, int), but sorting, encoding and writing the zip run as separate
+    // stages (each still spread over the executor) so they can be timed individually
+    public void write(File output, Executor executor, int compressionMethod, int compressionLevel,
+        PipelineMetrics metrics) throws IOException {
+        PipelineMetrics.Stage sort = metrics.start("sort");
+        CompletableFuture<List<MemberEntry>> sortedMethods = CompletableFuture.supplyAsync(() ->
+            sortMembers(this.methods.values()), executor);
+        CompletableFuture<List<MemberEntry>> sortedFields = CompletableFuture.supplyAsync(() ->
+            sortMembers(this.fields.values()), executor);
+        CompletableFuture<List<ParamEntry>> sortedParams = CompletableFuture.supplyAsync(() ->
+            sortParams(this.params.values()), executor);
+        await(CompletableFuture.allOf(sortedMethods, sortedFields, sortedParams));
+        sort.rows(this.methods.size() + this.fields.size() + this.params.size()).stop();
+
+        PipelineMetrics.Stage encode = metrics.start("csv encode");
+        CompletableFuture<CsvBuffer> encodedMethods = sortedMethods.thenApplyAsync(sorted ->
+            encodeMembers(METHODS_CSV_HEADER, sorted), executor);
+        CompletableFuture<CsvBuffer> encodedFields = sortedFields.thenApplyAsync(sorted ->
+            encodeMembers(FIELDS_CSV_HEADER, sorted), executor);
+        CompletableFuture<CsvBuffer> encodedParams = sortedParams.thenApplyAsync(sorted ->
+            encodeParams(PARAMS_CSV_HEADER, sorted), executor);
+        await(CompletableFuture.allOf(encodedMethods, encodedFields, encodedParams));
+        long csvBytes = await(encodedMethods).size() + await(encodedFields).size() + await(encodedParams).size();
+        encode.rows(this.methods.size() + this.fields.size() + this.params.size()).bytesWritten(csvBytes).stop();
+
+        PipelineMetrics.Stage zipWrite = metrics.start("zip write");
+        try (ZipOutputStream zip = openZip(output, compressionLevel)) {
+            writeEntry(zip, METHODS_CSV, await(encodedMethods), compressionMethod);
+            writeEntry(zip, FIELDS_CSV, await(encodedFields), compressionMethod);
+            writeEntry(zip, PARAMS_CSV, await(encodedParams), compressionMethod);
+        }
+        zipWrite.rows(this.methods.size() + this.fields.size() + this.params.size()).bytesRead(csvBytes)
+            .bytesWritten(output.length()).stop();
+    }
+
+    static ZipOutputStream openZip(File output, int compressionLevel) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(output.toPath())));
+        zip.setLevel(compressionLevel);
+        return zip;
+    }
+
+    static void writeEntry(ZipOutputStream zip, String name, CsvBuffer csv, int compressionMethod) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(compressionMethod);
+        if (compressionMethod == ZipEntry.STORED) {
+            entry.setSize(csv.size());
+            entry.setCompressedSize(csv.size());
+            entry.setCrc(csv.crc32());
+        }
+        zip.putNextEntry(entry);
+        csv.writeTo(zip);
+        zip.closeEntry();
+    }
+
+    private static List<MemberEntry> sortMembers(Collection<MemberEntry> entries) {
+        List<MemberEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(MemberEntry::getUnmappedName));
+        return sorted;
+    }
+
+    private static List<ParamEntry> sortParams(Collection<ParamEntry> entries) {
+        List<ParamEntry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparing(ParamEntry::getUnmappedName));
+        return sorted;
+    }
+
+    static CsvBuffer encodeMembers(String[] header, Collection<MemberEntry> sorted) {
+        CsvBuffer csv = new CsvBuffer(sorted.size() * AVERAGE_MEMBER_ROW_LENGTH);
+        csv.header(header);
+        for (MemberEntry entry : sorted) {
+            if (!entry.getMappedName().isBlank()) {
+                csv.field(entry.getUnmappedName()).separator()
+                    .field(entry.getMappedName()).separator()
+                    .field(entry.getSide().toNumber()).separator()
+                    .field(entry.getJavadoc()).newLine();
             }
+        }
+        return csv;
+    }
 
-            // params file
-            try (BufferedWriter writer = Files.newBufferedWriter(fs.getPath(PARAMS_CSV))) {
-                writer.write(String.join(",", PARAMS_CSV_HEADER));
-                writer.newLine();
-
-                List<ParamEntry> params = new ArrayList<>(this.params.values());
-                params.sort(Comparator.comparing(ParamEntry::getUnmappedName));
-
-                for (ParamEntry param : params) {
-                    if (!param.getMappedName().isBlank()) {
-                        writer.write(String.join(",", new String[] {
-                            param.getUnmappedName(), param.getMappedName(), Integer.toString(param.getSide().toNumber())
-                        }));
-                        writer.newLine();
-                    }
-                }
+    static CsvBuffer encodeParams(String[] header, Collection<ParamEntry> sorted) {
+        CsvBuffer csv = new CsvBuffer(sorted.size() * AVERAGE_PARAM_ROW_LENGTH);
+        csv.header(header);
+        for (ParamEntry entry : sorted) {
+            if (!entry.getMappedName().isBlank()) {
+                csv.field(entry.getUnmappedName()).separator()
+                    .field(entry.getMappedName()).separator()
+                    .field(entry.getSide().toNumber()).newLine();
             }
         }
+        return csv;
     }
 
     public static MappingExport read(File export) {
-        MappingExport mappings = new MappingExport();
+        return read(export, Runnable::run);
+    }
 
+    // The three files are parsed as separate tasks on the executor, each filling its own map with its own string pool
+    public static MappingExport read(File export, Executor executor) {
         try (FileSystem fs = FileSystems.newFileSystem(export.toPath())) {
+            MappingExport mappings = new MappingExport(
+                expectedRows(fs.getPath(METHODS_CSV), AVERAGE_MEMBER_ROW_LENGTH),
+                expectedRows(fs.getPath(FIELDS_CSV), AVERAGE_MEMBER_ROW_LENGTH),
+                expectedRows(fs.getPath(PARAMS_CSV), AVERAGE_PARAM_ROW_LENGTH));
 
             // Functions/methods CSV file
-            try (CSVReader reader = new CSVReader(Files.newBufferedReader(fs.getPath(METHODS_CSV)))) {
-                reader.readNext(); // Skip header
-
-                for (String[] line : reader) {
-                    mappings
-                        .addMethod(line[0], new MemberEntry(line[0], line[1], Side.from(Integer.parseInt(line[2])), line[3]));
-                }
-            } catch (CsvValidationException e) {
-                throw new RuntimeException("Exception while reading " + METHODS_CSV, e);
-            }
+            CompletableFuture<Void> methods = CompletableFuture.runAsync(() -> readCsv(fs, METHODS_CSV, (line, pool) ->
+                mappings.addMethod(line[0], new MemberEntry(line[0], pool.intern(line[1]),
+                    Side.from(Integer.parseInt(line[2])), pool.intern(line[3])))), executor);
 
             // Fields CSV file
-            try (CSVReader reader = new CSVReader(Files.newBufferedReader(fs.getPath(FIELDS_CSV)))) {
-                reader.readNext(); // Skip header
-
-                for (String[] line : reader) {
-                    mappings
-                        .addField(line[0], new MemberEntry(line[0], line[1], Side.from(Integer.parseInt(line[2])), line[3]));
-                }
-            } catch (CsvValidationException e) {
-                throw new RuntimeException("Exception while reading " + FIELDS_CSV, e);
-            }
+            CompletableFuture<Void> fields = CompletableFuture.runAsync(() -> readCsv(fs, FIELDS_CSV, (line, pool) ->
+                mappings.addField(line[0], new MemberEntry(line[0], pool.intern(line[1]),
+                    Side.from(Integer.parseInt(line[2])), pool.intern(line[3])))), executor);
 
             // Params CSV file
-            try (CSVReader reader = new CSVReader(Files.newBufferedReader(fs.getPath(PARAMS_CSV)))) {
-                reader.readNext(); // Skip header
-
-                for (String[] line : reader) {
-                    mappings.addParam(line[0], new ParamEntry(line[0], line[1], Side.from(Integer.parseInt(line[2]))));
-                }
-            } catch (CsvValidationException e) {
-                throw new RuntimeException("Exception while reading " + PARAMS_CSV, e);
-            }
+            CompletableFuture<Void> params = CompletableFuture.runAsync(() -> readCsv(fs, PARAMS_CSV, (line, pool) ->
+                mappings.addParam(line[0], new ParamEntry(line[0], pool.intern(line[1]),
+                    Side.from(Integer.parseInt(line[2]))))), executor);
+
+            await(CompletableFuture.allOf(methods, fields, params));
+            return mappings;
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mappings export file", e);
+        }
+    }
+
+    private static void readCsv(FileSystem fs, String name, BiConsumer<String[], StringPool> consumer) {
+        StringPool pool = new StringPool();
+        try (CSVReader reader = new CSVReader(Files.newBufferedReader(fs.getPath(name)))) {
+            reader.readNext(); // Skip header
 
+            for (String[] line : reader) {
+                consumer.accept(line, pool);
+            }
+        } catch (CsvValidationException e) {
+            throw new RuntimeException("Exception while reading " + name, e);
         } catch (IOException e) {
             throw new RuntimeException("Exception while reading mappings export file", e);
         }
+    }
 
-        return mappings;
+    private static int expectedRows(Path csv, int averageRowLength) throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Files.size(csv) / averageRowLength);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
     }
 }
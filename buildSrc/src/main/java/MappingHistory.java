@@ -0,0 +1,630 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+// Append-only history of the exports of successive days, for timelines of single names and the export of any past
+// day. Only the rows changed since the previous day are stored: the file is a log of MappingDeltas, the first against
+// an empty export, each as one record of
+//   length, CRC32 of the rest, epoch day, digest of the day's export (see MappingExport.digest), binary export (see
+//   BinaryMappings) of the rows added or changed, then the names removed from methods, fields and params (count,
+//   then names).
+// A record cut short by an interrupted ingest is ignored, and overwritten by the next one. A delta is only added if
+// it was made against the last day's export, going by its digests.
+//
+// Beside the log is an index (<file>.index) of every name's versions up to a checkpoint, sorted by name so a
+// timeline is found by binary search without reading the rest, written again once the records after it are a quarter
+// of its size. Opening the history only reads the index's header and replays the records after it; an index that
+// doesn't match the log is ignored, and the whole log replayed instead.
+public final class MappingHistory {
+    private static final int MAGIC = 0x4D534848; // MSHH
+    private static final int INDEX_MAGIC = 0x4D534849; // MSHI
+    private static final int VERSION = 2;
+    private static final int HEADER_LENGTH = 8;
+    private static final long MIN_CHECKPOINT_LENGTH = 64 * 1024;
+
+    private static final MappingType[] TYPES = { MappingType.METHOD, MappingType.FIELD, MappingType.PARAM };
+
+    private final File file;
+    private final File indexFile;
+    // Null if there's no index matching the log
+    private Index index;
+    // The versions from the records after the index, or every version once loaded
+    private SrgMap<Timeline> timelines = new SrgMap<>();
+    private boolean loaded;
+    private final List<LocalDate> dates = new ArrayList<>();
+    // Length of the file up to the end of the last complete record
+    private long length;
+    // Offset and header (length and checksum) of the last complete record
+    private long lastRecord;
+    private long lastRecordHeader;
+    // Digest of the last day's export, 0 (that of an empty export) before the first
+    private long digest;
+    // The export of the last day, once it's been needed
+    private MappingExport latest;
+
+    private MappingHistory(File file) {
+        this.file = file;
+        this.indexFile = new File(file.getPath() + ".index");
+    }
+
+    // An empty history if the file doesn't exist yet
+    public static MappingHistory open(File file) {
+        MappingHistory history = new MappingHistory(file);
+        if (!file.exists()) {
+            history.loaded = true;
+            return history;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a current mapping history file");
+            }
+            history.length = HEADER_LENGTH;
+            history.index = Index.open(history.indexFile, channel);
+            if (history.index == null) {
+                history.loaded = true;
+            } else {
+                history.restore(history.index);
+                in.skipNBytes(history.length - HEADER_LENGTH);
+            }
+            byte[] record;
+            while ((record = readRecord(in)) != null) {
+                history.replay(record);
+                history.lastRecord = history.length;
+                history.lastRecordHeader = recordHeader(record);
+                history.length += 8 + record.length;
+            }
+        } catch (EOFException e) {
+            // Shorter than the header, an ingest was cut short before writing anything
+            history.length = 0;
+            history.loaded = true;
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mapping history file", e);
+        }
+        return history;
+    }
+
+    private void restore(Index index) {
+        for (int day : index.days) {
+            dates.add(LocalDate.ofEpochDay(day));
+        }
+        length = index.logLength;
+        lastRecord = index.lastRecord;
+        lastRecordHeader = index.lastRecordHeader;
+        digest = index.digest;
+    }
+
+    // The record's contents, or null at the end of the file or a record that was only partly written
+    private static byte[] readRecord(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(8);
+        if (header.length < 8) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] record = in.readNBytes(length);
+        if (record.length < length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (int) crc.getValue() == checksum ? record : null;
+    }
+
+    // The length and checksum a record is written after
+    private static long recordHeader(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return (long) record.length << 32 | crc.getValue();
+    }
+
+    private void replay(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        LocalDate date = LocalDate.ofEpochDay(in.readInt());
+        digest = in.readLong();
+        byte[] changed = new byte[in.readInt()];
+        in.readFully(changed);
+        MappingExport export = BinaryMappings.readExport(changed);
+        List<List<String>> removed = new ArrayList<>(TYPES.length);
+        for (int i = 0; i < TYPES.length; i++) {
+            String[] names = new String[in.readInt()];
+            for (int j = 0; j < names.length; j++) {
+                names[j] = in.readUTF();
+            }
+            removed.add(Arrays.asList(names));
+        }
+        apply(date, export, removed);
+    }
+
+    private void apply(LocalDate date, MappingExport changed, List<? extends Collection<String>> removed) {
+        int day = (int) date.toEpochDay();
+        add(MappingType.METHOD, day, changed.getMethods().values());
+        add(MappingType.FIELD, day, changed.getFields().values());
+        add(MappingType.PARAM, day, changed.getParams().values());
+        for (int i = 0; i < TYPES.length; i++) {
+            for (String name : removed.get(i)) {
+                timeline(TYPES[i], name).add(day, null);
+            }
+        }
+        dates.add(date);
+    }
+
+    private void add(MappingType type, int day, Collection<? extends MappingExport.Entry> entries) {
+        for (MappingExport.Entry entry : entries) {
+            timeline(type, entry.getUnmappedName()).add(day, entry);
+        }
+    }
+
+    private Timeline timeline(MappingType type, String name) {
+        Timeline timeline = timelines.get(name);
+        if (timeline == null) {
+            timeline = new Timeline(type, name);
+            timelines.put(name, timeline);
+        }
+        return timeline;
+    }
+
+    // Reads every version in the index, so the timelines hold the whole history
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        try {
+            SrgMap<Timeline> all = index.readAll();
+            for (Timeline recent : timelines.values()) {
+                Timeline timeline = all.get(recent.name);
+                if (timeline == null) {
+                    all.put(recent.name, recent);
+                } else {
+                    timeline.addAll(recent);
+                }
+            }
+            timelines = all;
+            loaded = true;
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mapping history index", e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // The days ingested, oldest first
+    public List<LocalDate> getDates() {
+        return Collections.unmodifiableList(dates);
+    }
+
+    // Null if the name has never been in an export
+    public Timeline getTimeline(String srgName) {
+        Timeline recent = timelines.get(srgName);
+        if (loaded) {
+            return recent;
+        }
+        Timeline timeline;
+        try {
+            timeline = index.timeline(srgName);
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading mapping history index", e);
+        }
+        if (timeline == null) {
+            return recent;
+        }
+        if (recent != null) {
+            timeline.addAll(recent);
+        }
+        return timeline;
+    }
+
+    // The export as of the last day ingested on or before the date; empty before the first
+    public MappingExport reconstruct(LocalDate date) {
+        load();
+        int day = (int) date.toEpochDay();
+        MappingExport export = new MappingExport();
+        for (Timeline timeline : timelines.values()) {
+            MappingExport.Entry entry = timeline.at(day);
+            if (entry == null) {
+                continue;
+            }
+            if (timeline.type == MappingType.METHOD) {
+                export.addMethod(timeline.name, (MappingExport.MemberEntry) entry);
+            } else if (timeline.type == MappingType.FIELD) {
+                export.addField(timeline.name, (MappingExport.MemberEntry) entry);
+            } else {
+                export.addParam(timeline.name, (MappingExport.ParamEntry) entry);
+            }
+        }
+        return export;
+    }
+
+    // Adds the day's full export, storing only what changed since the last day. Returns those changes.
+    public MappingDelta ingest(MappingExport export, LocalDate date) throws IOException {
+        checkDate(date);
+        if (latest == null) {
+            latest = dates.isEmpty() ? new MappingExport() : reconstruct(dates.get(dates.size() - 1));
+        }
+        MappingDelta delta = MappingDelta.between(latest, export);
+        append(delta, date);
+        latest = export;
+        return delta;
+    }
+
+    // Adds the day from its changes since the last day ingested, without reading the rest of the export. The delta
+    // must have been made against the last day's export.
+    public void ingest(MappingDelta delta, LocalDate date) throws IOException {
+        checkDate(date);
+        if (delta.getBaseDigest() != digest) {
+            throw new IllegalArgumentException("The delta was made against a different export than "
+                + (dates.isEmpty() ? "the empty history" : "the history's last day, " + dates.get(dates.size() - 1)));
+        }
+        append(delta, date);
+        latest = null;
+    }
+
+    private void checkDate(LocalDate date) {
+        if (!dates.isEmpty() && !date.isAfter(dates.get(dates.size() - 1))) {
+            throw new IllegalArgumentException("The history already has " + dates.get(dates.size() - 1)
+                + ", so can't add the earlier or same day " + date);
+        }
+    }
+
+    private void append(MappingDelta delta, LocalDate date) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt((int) date.toEpochDay());
+        out.writeLong(delta.getResultDigest());
+        ByteArrayOutputStream changed = new ByteArrayOutputStream();
+        BinaryMappings.write(changed, delta.getChanged());
+        out.writeInt(changed.size());
+        changed.writeTo(out);
+        List<Set<String>> removed = Arrays.asList(delta.getRemovedMethods(), delta.getRemovedFields(),
+            delta.getRemovedParams());
+        for (Set<String> names : removed) {
+            out.writeInt(names.size());
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+        }
+        out.flush();
+        byte[] record = bytes.toByteArray();
+        long header = recordHeader(record);
+
+        if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Unable to create parent directories for " + file);
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE)) {
+            // Drops any partly written record left by an earlier ingest
+            channel.truncate(length);
+            channel.position(length);
+            ByteBuffer buffer = ByteBuffer.allocate((length == 0 ? HEADER_LENGTH : 0) + 8 + record.length);
+            if (length == 0) {
+                buffer.putInt(MAGIC).putInt(VERSION);
+            }
+            lastRecord = length == 0 ? HEADER_LENGTH : length;
+            buffer.putLong(header).put(record).flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            length = channel.position();
+        }
+        lastRecordHeader = header;
+        digest = delta.getResultDigest();
+
+        apply(date, delta.getChanged(), removed);
+
+        long sinceCheckpoint = length - (index == null ? HEADER_LENGTH : index.logLength);
+        if (sinceCheckpoint >= Math.max(MIN_CHECKPOINT_LENGTH, index == null ? 0 : index.size / 4)) {
+            checkpoint();
+        }
+    }
+
+    // Writes the index of every version so far, replacing the last one only once it's complete
+    private void checkpoint() throws IOException {
+        load();
+        List<Timeline> sorted = new ArrayList<>(timelines.values());
+        sorted.sort(Comparator.comparing(Timeline::getName));
+
+        Index checkpoint = new Index(indexFile);
+        checkpoint.logLength = length;
+        checkpoint.lastRecord = lastRecord;
+        checkpoint.lastRecordHeader = lastRecordHeader;
+        checkpoint.digest = digest;
+        checkpoint.days = dates.stream().mapToInt(date -> (int) date.toEpochDay()).toArray();
+        checkpoint.names = sorted.size();
+        checkpoint.offsets = Index.headerLength(checkpoint.days.length);
+
+        // The table of offsets is only known once the timelines are written, so it's filled in after
+        File temp = new File(indexFile.getPath() + ".tmp");
+        long[] offsets = new long[sorted.size()];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(temp.toPath())))) {
+            checkpoint.writeHeader(out);
+            out.write(new byte[8 * sorted.size()]);
+            long position = checkpoint.offsets + 8L * sorted.size();
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            DataOutputStream blockOut = new DataOutputStream(block);
+            for (int i = 0; i < sorted.size(); i++) {
+                block.reset();
+                sorted.get(i).write(blockOut);
+                blockOut.flush();
+                offsets[i] = position;
+                out.writeInt(block.size());
+                block.writeTo(out);
+                position += 4 + block.size();
+            }
+            checkpoint.size = position;
+        }
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8 * offsets.length);
+            buffer.asLongBuffer().put(offsets);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, checkpoint.offsets + buffer.position());
+            }
+            channel.force(false);
+        }
+        Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        index = checkpoint;
+    }
+
+    // The index written at a checkpoint: a header of
+    //   magic, version, length of the log it covers, offset and header of the log's last record then, digest,
+    //   days (count, then epoch days), count of names, then the offset of each name's timeline in name order,
+    // then each timeline as its length, name, type and versions (count, then each as day and side, -1 if removed,
+    // then mapped name and javadoc for methods and fields)
+    private static final class Index {
+        private final File file;
+        private long logLength;
+        private long lastRecord;
+        private long lastRecordHeader;
+        private long digest;
+        private int[] days;
+        private int names;
+        // Offset of the table of offsets
+        private long offsets;
+        private long size;
+
+        Index(File file) {
+            this.file = file;
+        }
+
+        static long headerLength(int days) {
+            return 4 + 4 + 8 * 4 + 4 + 4L * days + 4;
+        }
+
+        // Null if there's no index, or it isn't of the log up to the end of one of its records
+        static Index open(File file, FileChannel log) throws IOException {
+            if (!file.exists()) {
+                return null;
+            }
+            Index index = new Index(file);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+                if (in.readInt() != INDEX_MAGIC || in.readInt() != VERSION) {
+                    return null;
+                }
+                index.logLength = in.readLong();
+                index.lastRecord = in.readLong();
+                index.lastRecordHeader = in.readLong();
+                index.digest = in.readLong();
+                index.days = new int[in.readInt()];
+                for (int i = 0; i < index.days.length; i++) {
+                    index.days[i] = in.readInt();
+                }
+                index.names = in.readInt();
+            } catch (EOFException | NegativeArraySizeException e) {
+                return null;
+            }
+            index.offsets = headerLength(index.days.length);
+            index.size = file.length();
+            if (index.logLength > log.size() || index.lastRecord + 8 + (index.lastRecordHeader >>> 32)
+                != index.logLength) {
+                return null;
+            }
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining() && log.read(header, index.lastRecord + header.position()) > 0) {
+                // Reads the rest
+            }
+            return header.position() == 8 && header.getLong(0) == index.lastRecordHeader ? index : null;
+        }
+
+        // Null if the name isn't in the index
+        Timeline timeline(String name) throws IOException {
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                int low = 0;
+                int high = names - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    in.seek(offsets + 8L * mid);
+                    in.seek(in.readLong());
+                    byte[] block = new byte[in.readInt()];
+                    in.readFully(block);
+                    DataInputStream blockIn = new DataInputStream(new ByteArrayInputStream(block));
+                    int compared = blockIn.readUTF().compareTo(name);
+                    if (compared < 0) {
+                        low = mid + 1;
+                    } else if (compared > 0) {
+                        high = mid - 1;
+                    } else {
+                        return Timeline.read(name, blockIn);
+                    }
+                }
+                return null;
+            }
+        }
+
+        SrgMap<Timeline> readAll() throws IOException {
+            SrgMap<Timeline> timelines = new SrgMap<>(names);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+                in.skipNBytes(offsets + 8L * names);
+                for (int i = 0; i < names; i++) {
+                    in.readInt(); // Length
+                    String name = in.readUTF();
+                    timelines.put(name, Timeline.read(name, in));
+                }
+            }
+            return timelines;
+        }
+
+        void writeHeader(DataOutputStream out) throws IOException {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(logLength);
+            out.writeLong(lastRecord);
+            out.writeLong(lastRecordHeader);
+            out.writeLong(digest);
+            out.writeInt(days.length);
+            for (int day : days) {
+                out.writeInt(day);
+            }
+            out.writeInt(names);
+        }
+    }
+
+    // The versions of one name, oldest first, each the row as of a day it changed, or null from a day it was removed
+    public static final class Timeline {
+        private final MappingType type;
+        private final String name;
+        private int[] days = new int[1];
+        private MappingExport.Entry[] entries = new MappingExport.Entry[1];
+        private int size;
+
+        Timeline(MappingType type, String name) {
+            this.type = type;
+            this.name = name;
+        }
+
+        void add(int day, MappingExport.Entry entry) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size * 2);
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            days[size] = day;
+            entries[size++] = entry;
+        }
+
+        void addAll(Timeline later) {
+            for (int i = 0; i < later.size; i++) {
+                add(later.days[i], later.entries[i]);
+            }
+        }
+
+        // As the index holds it, after the length of the lot
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(name);
+            out.writeByte(type.ordinal());
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(days[i]);
+                MappingExport.Entry entry = entries[i];
+                if (entry == null) {
+                    out.writeByte(-1);
+                    continue;
+                }
+                out.writeByte(entry.getSide().toNumber());
+                writeString(out, entry.getMappedName());
+                if (entry instanceof MappingExport.MemberEntry) {
+                    writeString(out, ((MappingExport.MemberEntry) entry).getJavadoc());
+                }
+            }
+        }
+
+        static Timeline read(String name, DataInputStream in) throws IOException {
+            Timeline timeline = new Timeline(TYPES[in.readByte()], name);
+            for (int versions = in.readInt(); versions > 0; versions--) {
+                int day = in.readInt();
+                int side = in.readByte();
+                if (side < 0) {
+                    timeline.add(day, null);
+                } else if (timeline.type == MappingType.PARAM) {
+                    timeline.add(day, new MappingExport.ParamEntry(name, readString(in), Side.from(side)));
+                } else {
+                    timeline.add(day, new MappingExport.MemberEntry(name, readString(in), Side.from(side),
+                        readString(in)));
+                }
+            }
+            return timeline;
+        }
+
+        // Unlike writeUTF, not limited to 64KB, which a javadoc could reach
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // The row as of the day, or null if the name wasn't in the export then
+        MappingExport.Entry at(int day) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (days[mid] <= day) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low == 0 ? null : entries[low - 1];
+        }
+
+        public MappingType getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public LocalDate getDate(int version) {
+            return LocalDate.ofEpochDay(days[version]);
+        }
+
+        // Null if the name was removed that day
+        public MappingExport.Entry getEntry(int version) {
+            return entries[version];
+        }
+    }
+}
@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Read-only lookup tables over an export, and optionally the spreadsheet it was combined from for class names and
+// validation state. Never changed once built, so any number of threads can share one, and a newer one can replace it
+// whole.
+public final class MappingIndex {
+    private static final Comparator<Mapping> BY_MAPPED_NAME = Comparator.comparing(Mapping::getMappedName)
+        .thenComparing(Mapping::getSrgName);
+
+    private final SrgMap<Mapping> bySrgName;
+    private final Map<Integer, List<Mapping>> bySrgId;
+    private final Map<String, List<Mapping>> byMappedName;
+    private final Map<String, List<Mapping>> byClass;
+    // Every mapping sorted by mapped name, so the names sharing a prefix are next to each other
+    private final Mapping[] sortedByMappedName;
+
+    private MappingIndex(SrgMap<Mapping> bySrgName) {
+        this.bySrgName = bySrgName;
+        this.bySrgId = new HashMap<>(bySrgName.size());
+        this.byMappedName = new HashMap<>(bySrgName.size());
+        this.byClass = new HashMap<>();
+        for (Mapping mapping : bySrgName.values()) {
+            bySrgId.computeIfAbsent(mapping.srgId, id -> new ArrayList<>(1)).add(mapping);
+            byMappedName.computeIfAbsent(mapping.mappedName, name -> new ArrayList<>(1)).add(mapping);
+            if (mapping.className != null) {
+                byClass.computeIfAbsent(mapping.className, name -> new ArrayList<>()).add(mapping);
+            }
+        }
+        this.sortedByMappedName = bySrgName.values().toArray(new Mapping[0]);
+        Arrays.sort(sortedByMappedName, BY_MAPPED_NAME);
+    }
+
+    // The spreadsheet may be null; without it no mapping has a class name or validation state
+    public static MappingIndex build(MappingExport export, MappingSpreadsheet spreadsheet) {
+        SrgMap<Mapping> mappings = new SrgMap<>(export.getMethods().size() + export.getFields().size()
+            + export.getParams().size());
+        addAll(mappings, MappingType.METHOD, export.getMethods().values(),
+            spreadsheet != null ? spreadsheet.getMethods() : null);
+        addAll(mappings, MappingType.FIELD, export.getFields().values(),
+            spreadsheet != null ? spreadsheet.getFields() : null);
+        addAll(mappings, MappingType.PARAM, export.getParams().values(),
+            spreadsheet != null ? spreadsheet.getParams() : null);
+        return new MappingIndex(mappings);
+    }
+
+    private static void addAll(SrgMap<Mapping> mappings, MappingType type,
+        Collection<? extends MappingExport.Entry> entries, Map<String, MappingSpreadsheet.Entry> rows) {
+        for (MappingExport.Entry entry : entries) {
+            MappingSpreadsheet.Entry row = rows != null ? rows.get(entry.getUnmappedName()) : null;
+            String javadoc = entry instanceof MappingExport.MemberEntry
+                ? ((MappingExport.MemberEntry) entry).getJavadoc() : "";
+            mappings.put(entry.getUnmappedName(), new Mapping(type, entry.getUnmappedName(), entry.getSrgId(),
+                entry.getMappedName(), entry.getSide(), javadoc, row != null ? row.getClassName() : null,
+                row != null ? row.isValidated() : null));
+        }
+    }
+
+    public int size() {
+        return bySrgName.size();
+    }
+
+    // Null if there's no mapping for the name
+    public Mapping get(String srgName) {
+        return bySrgName.get(srgName);
+    }
+
+    // The method or field with the id, along with the params of a method or constructor with it
+    public List<Mapping> getById(int srgId) {
+        return Collections.unmodifiableList(bySrgId.getOrDefault(srgId, Collections.emptyList()));
+    }
+
+    public List<Mapping> getByMappedName(String mappedName) {
+        return Collections.unmodifiableList(byMappedName.getOrDefault(mappedName, Collections.emptyList()));
+    }
+
+    public List<Mapping> getByClass(String className) {
+        return Collections.unmodifiableList(byClass.getOrDefault(className, Collections.emptyList()));
+    }
+
+    // Up to limit mappings whose mapped names start with the prefix, in order of mapped name
+    public List<Mapping> findByPrefix(String prefix, int limit) {
+        int low = 0;
+        int high = sortedByMappedName.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedByMappedName[mid].mappedName.compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        List<Mapping> found = new ArrayList<>(Math.min(limit, 16));
+        for (int i = low; i < sortedByMappedName.length && found.size() < limit
+            && sortedByMappedName[i].mappedName.startsWith(prefix); i++) {
+            found.add(sortedByMappedName[i]);
+        }
+        return found;
+    }
+
+    public static final class Mapping {
+        private final MappingType type;
+        private final String srgName;
+        private final int srgId;
+        private final String mappedName;
+        private final Side side;
+        private final String javadoc;
+        private final String className;
+        private final Boolean validated;
+
+        Mapping(MappingType type, String srgName, int srgId, String mappedName, Side side, String javadoc,
+            String className, Boolean validated) {
+            this.type = type;
+            this.srgName = srgName;
+            this.srgId = srgId;
+            this.mappedName = mappedName;
+            this.side = side;
+            this.javadoc = javadoc;
+            this.className = className;
+            this.validated = validated;
+        }
+
+        public MappingType getType() {
+            return type;
+        }
+
+        public String getSrgName() {
+            return srgName;
+        }
+
+        public int getSrgId() {
+            return srgId;
+        }
+
+        public String getMappedName() {
+            return mappedName;
+        }
+
+        public Side getSide() {
+            return side;
+        }
+
+        public String getJavadoc() {
+            return javadoc;
+        }
+
+        // Null if the mapping isn't in the spreadsheet
+        public String getClassName() {
+            return className;
+        }
+
+        // Null if the mapping isn't in the spreadsheet
+        public Boolean getValidated() {
+            return validated;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Answers lookups against a MappingIndex over HTTP on the loopback address, as JSON:
+//   GET /srg/<SRG name>          the mapping, or 404
+//   GET /id/<SRG id>             the method or field with the id and the params of a method with it
+//   GET /mapped/<mapped name>    every mapping with the name
+//   GET /prefix/<prefix>?limit=n mappings whose mapped names start with the prefix, 50 unless limited
+//   GET /class/<class name>      mappings the spreadsheet puts in the class, e.g. /class/net/minecraft/item/Item
+//   GET /stats                   the number of mappings
+// The index can be swapped while serving; each request uses either the old or the new one throughout.
+// Run with sun.net.httpserver.nodelay set (see NO_DELAY_PROPERTY): the server writes a response's headers and body
+// separately, so with Nagle's algorithm on each small response waits out the client's delayed ACK, about 40 ms.
+public class MappingLookupService implements AutoCloseable {
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 1000;
+    // Read by the JDK once, when the first server in the JVM is created
+    public static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final AtomicReference<MappingIndex> index;
+    private final ExecutorService executor;
+    private final HttpServer server;
+
+    // Port 0 picks a free port
+    public MappingLookupService(MappingIndex index, int port) throws IOException {
+        this.index = new AtomicReference<>(index);
+        this.executor = requestExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    // A virtual thread per request where the runtime has them, otherwise a pool of platform threads
+    private static ExecutorService requestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public MappingIndex getIndex() {
+        return index.get();
+    }
+
+    // Returns the index being replaced
+    public MappingIndex swap(MappingIndex newIndex) {
+        return index.getAndSet(newIndex);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, error("Only GET is supported"));
+                return;
+            }
+            MappingIndex current = index.get();
+            String path = exchange.getRequestURI().getPath();
+            int slash = path.indexOf('/', 1);
+            String endpoint = slash < 0 ? path.substring(1) : path.substring(1, slash);
+            String argument = slash < 0 ? "" : path.substring(slash + 1);
+
+            switch (endpoint) {
+                case "srg": {
+                    MappingIndex.Mapping mapping = current.get(argument);
+                    if (mapping == null) {
+                        respond(exchange, 404, error("No mapping for " + argument));
+                    } else {
+                        respond(exchange, 200, toJson(mapping, new StringBuilder()).toString());
+                    }
+                    break;
+                }
+                case "id": {
+                    int id = parseNumber(argument);
+                    if (id < 0) {
+                        respond(exchange, 400, error("Not an SRG id: " + argument));
+                    } else {
+                        respond(exchange, 200, toJson(current.getById(id)));
+                    }
+                    break;
+                }
+                case "mapped":
+                    respond(exchange, 200, toJson(current.getByMappedName(argument)));
+                    break;
+                case "prefix": {
+                    int limit = parseLimit(exchange.getRequestURI().getQuery());
+                    if (limit < 0) {
+                        respond(exchange, 400, error("The limit must be between 1 and " + MAX_LIMIT));
+                    } else {
+                        respond(exchange, 200, toJson(current.findByPrefix(argument, limit)));
+                    }
+                    break;
+                }
+                case "class":
+                    respond(exchange, 200, toJson(current.getByClass(argument)));
+                    break;
+                case "stats":
+                    respond(exchange, 200, "{\"mappings\": " + current.size() + "}");
+                    break;
+                default:
+                    respond(exchange, 404, error("Unknown endpoint " + path));
+                    break;
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // -1 unless the text is a non-negative int
+    private static int parseNumber(String text) {
+        if (text.isEmpty() || text.length() > 9) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    // -1 if the limit parameter is invalid
+    private static int parseLimit(String query) {
+        if (query == null) {
+            return DEFAULT_LIMIT;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("limit=")) {
+                int limit = parseNumber(parameter.substring("limit=".length()));
+                return limit >= 1 && limit <= MAX_LIMIT ? limit : -1;
+            }
+        }
+        return DEFAULT_LIMIT;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\": " + quote(message) + "}";
+    }
+
+    private static String toJson(List<MappingIndex.Mapping> mappings) {
+        StringBuilder json = new StringBuilder(mappings.size() * 128 + 2).append('[');
+        for (int i = 0; i < mappings.size(); i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            toJson(mappings.get(i), json);
+        }
+        return json.append(']').toString();
+    }
+
+    private static StringBuilder toJson(MappingIndex.Mapping mapping, StringBuilder json) {
+        return json.append("{\"type\": \"").append(mapping.getType().name().toLowerCase(Locale.ROOT))
+            .append("\", \"srg\": ").append(quote(mapping.getSrgName()))
+            .append(", \"mapped\": ").append(quote(mapping.getMappedName()))
+            .append(", \"side\": ").append(mapping.getSide().toNumber())
+            .append(", \"javadoc\": ").append(quote(mapping.getJavadoc()))
+            .append(", \"class\": ").append(mapping.getClassName() != null ? quote(mapping.getClassName()) : "null")
+            .append(", \"validated\": ").append(mapping.getValidated())
+            .append('}');
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
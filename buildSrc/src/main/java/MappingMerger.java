@@ -0,0 +1,568 @@
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+// Merges an ordered list of spreadsheets and exports into one spreadsheet, in a single k-way merge pass over all of
+// them in the order MappingSpreadsheet writes rows: fields, then methods, then params, each by SRG id. Each source
+// is read through a cursor that only holds its current row, or the one table of it being merged:
+// - spreadsheet CSVs are streamed, as long as they're in that order. Each is checked with a scan of its raw bytes
+//   before the merge starts, which stops at the first row out of order; one that isn't is read whole and sorted.
+// - export zips are sorted one CSV at a time, as their rows are ordered by name rather than id.
+// - binary mappings are read whole.
+// Where several sources have a row for the same name, the precedence picks the one kept; any others with a different
+// mapped name or side are reported as conflicts.
+public final class MappingMerger {
+    // Position of each MappingType, by ordinal, in the merge order
+    private static final int[] RANKS = { 1, 0, 2 };
+    private static final MappingType[] ORDER = { MappingType.FIELD, MappingType.METHOD, MappingType.PARAM };
+
+    // Ties between sources go to the earlier one, which keeps the merge deterministic
+    private static final Comparator<Cursor> CURSOR_ORDER = (first, second) -> {
+        int compare = compareKeys(first.row, second.row);
+        return compare != 0 ? compare : Integer.compare(first.source.priority, second.source.priority);
+    };
+
+    private final List<Source> sources;
+    private final Comparator<Row> precedence;
+    private final String placeholderClassName;
+    private final boolean allowUnvalidated;
+
+    // Sources are given highest priority first; unvalidated spreadsheet rows are dropped unless allowed
+    public MappingMerger(List<File> files, Comparator<Row> precedence, String placeholderClassName,
+        boolean allowUnvalidated) {
+        List<Source> sources = new ArrayList<>(files.size());
+        for (File file : files) {
+            sources.add(new Source(file, sources.size()));
+        }
+        this.sources = Collections.unmodifiableList(sources);
+        this.precedence = precedence;
+        this.placeholderClassName = placeholderClassName;
+        this.allowUnvalidated = allowUnvalidated;
+    }
+
+    public List<Source> getSources() {
+        return sources;
+    }
+
+    public Result merge() {
+        Result result = new Result(sources.size());
+        List<Cursor> cursors = new ArrayList<>(sources.size());
+        try {
+            for (Source source : sources) {
+                cursors.add(open(source, result));
+            }
+
+            PriorityQueue<Cursor> queue = new PriorityQueue<>(Math.max(1, cursors.size()), CURSOR_ORDER);
+            for (Cursor cursor : cursors) {
+                if (cursor.advance()) {
+                    queue.add(cursor);
+                }
+            }
+
+            List<Cursor> same = new ArrayList<>(cursors.size());
+            while (!queue.isEmpty()) {
+                Cursor first = queue.poll();
+                same.add(first);
+                while (!queue.isEmpty() && compareKeys(queue.peek().row, first.row) == 0) {
+                    same.add(queue.poll());
+                }
+
+                Row winner = first.row;
+                for (int i = 1; i < same.size(); i++) {
+                    if (precedence.compare(same.get(i).row, winner) < 0) {
+                        winner = same.get(i).row;
+                    }
+                }
+                for (Cursor cursor : same) {
+                    Row row = cursor.row;
+                    if (row != winner) {
+                        result.overridden++;
+                        if (!row.entry.getMappedName().equals(winner.entry.getMappedName())
+                            || row.entry.getSide() != winner.entry.getSide()) {
+                            result.conflicts.add(new Conflict(winner, row));
+                        }
+                    }
+                }
+                result.merged.add(winner.type, winner.entry);
+                result.kept[winner.source.priority]++;
+
+                for (Cursor cursor : same) {
+                    if (cursor.advance()) {
+                        queue.add(cursor);
+                    }
+                }
+                same.clear();
+            }
+        } finally {
+            for (Cursor cursor : cursors) {
+                try {
+                    cursor.close();
+                } catch (IOException e) {
+                    // Only read from, nothing is lost
+                }
+            }
+        }
+        return result;
+    }
+
+    private Cursor open(Source source, Result result) {
+        SpreadsheetDiagnostics diagnostics = result.diagnostics[source.priority];
+        String name = source.file.getName();
+        if (name.endsWith(".zip")) {
+            return new ExportCursor(source);
+        }
+        if (BinaryMappings.isBinary(source.file)) {
+            try {
+                byte[] data = Files.readAllBytes(source.file.toPath());
+                if (BinaryMappings.isSpreadsheet(data)) {
+                    return new SpreadsheetCursor(source, BinaryMappings.readSpreadsheet(data, diagnostics));
+                }
+                return new ExportCursor(source, BinaryMappings.readExport(data));
+            } catch (IOException e) {
+                throw new RuntimeException("Exception while reading binary mappings file", e);
+            }
+        }
+        if (!isInMergeOrder(source.file)) {
+            result.sortedInMemory.add(source);
+            return new SpreadsheetCursor(source, MappingSpreadsheet.read(source.file, diagnostics));
+        }
+        return new StreamingCursor(source, diagnostics);
+    }
+
+    // Whether the unmapped names of a spreadsheet CSV are in merge order, from a scan of the raw bytes that stops at
+    // the first one out of order, so ruling out a hand-edited sheet costs next to nothing. Quotes are tracked as in
+    // MappingSpreadsheet.splitRecords. Rows the reader would reject are checked too, which can only ever rule out a
+    // sheet the streaming cursor could have managed, never let through one it couldn't.
+    static boolean isInMergeOrder(File spreadsheet) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(spreadsheet.toPath()), 1 << 16)) {
+            StringBuilder name = new StringBuilder();
+            boolean header = true;
+            boolean quoted = false;
+            int column = 0;
+            int pending = -1;
+            int previousRank = -1;
+            int previousId = 0;
+            String previousName = null;
+            while (true) {
+                int b = pending >= 0 ? pending : in.read();
+                pending = -1;
+                if (b == '\\') {
+                    int next = in.read();
+                    if (next == '"' || next == '\\') {
+                        continue;
+                    }
+                    pending = next;
+                } else if (b == '"') {
+                    quoted = !quoted;
+                    continue;
+                } else if (b == ',' && !quoted) {
+                    column++;
+                    continue;
+                } else if (b == -1 || (b == '\n' && !quoted)) {
+                    MappingType type = header ? null : SrgNames.classify(name.toString());
+                    if (type != null) {
+                        String unmapped = name.toString();
+                        int rank = rank(type);
+                        int id = SrgNames.parseId(unmapped);
+                        int compare = rank != previousRank ? Integer.compare(rank, previousRank)
+                            : id != previousId ? Integer.compare(id, previousId) : unmapped.compareTo(previousName);
+                        if (compare < 0) {
+                            return false;
+                        }
+                        previousRank = rank;
+                        previousId = id;
+                        previousName = unmapped;
+                    }
+                    if (b == -1) {
+                        return true;
+                    }
+                    header = false;
+                    column = 0;
+                    name.setLength(0);
+                    continue;
+                }
+                // SRG names are short, anything longer is no name at all
+                if (column == 2 && name.length() <= 64) {
+                    name.append((char) b);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading spreadsheet file", e);
+        }
+    }
+
+    private static int compareKeys(Row first, Row second) {
+        return first.rank != second.rank ? Integer.compare(first.rank, second.rank)
+            : first.entry.compareTo(second.entry);
+    }
+
+    private static int rank(MappingType type) {
+        return RANKS[type.ordinal()];
+    }
+
+    // Earlier sources first, breaking any ties left by the other rules
+    public static Comparator<Row> precedence(List<Rule> rules) {
+        Comparator<Row> precedence = Rule.PRIORITY.comparator;
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            precedence = rules.get(i).comparator.thenComparing(precedence);
+        }
+        return precedence;
+    }
+
+    public enum Rule {
+        // The source listed first wins
+        PRIORITY("priority", Comparator.comparingInt((Row row) -> row.source.priority)),
+        // Validated rows win over unvalidated ones; export rows count as validated
+        VALIDATED_FIRST("validated-first", Comparator.comparing((Row row) -> !row.entry.isValidated())),
+        // The row from the most recently modified source wins
+        NEWEST_WINS("newest-wins", Comparator.comparingLong((Row row) -> -row.source.lastModified));
+
+        private final String name;
+        private final Comparator<Row> comparator;
+
+        Rule(String name, Comparator<Row> comparator) {
+            this.name = name;
+            this.comparator = comparator;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Comparator<Row> getComparator() {
+            return comparator;
+        }
+
+        public static Rule byName(String name) {
+            for (Rule rule : values()) {
+                if (rule.name.equals(name.trim().toLowerCase(Locale.ROOT))) {
+                    return rule;
+                }
+            }
+            throw new IllegalArgumentException("Unknown precedence rule " + name + ", expected one of priority, "
+                + "validated-first or newest-wins");
+        }
+    }
+
+    public static final class Source {
+        private final File file;
+        private final int priority;
+        private final long lastModified;
+
+        Source(File file, int priority) {
+            this.file = file;
+            this.priority = priority;
+            this.lastModified = file.lastModified();
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        // 0 for the first source listed
+        public int getPriority() {
+            return priority;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String toString() {
+            return file.getName();
+        }
+    }
+
+    // One row of a source, as a spreadsheet entry; export rows are validated and in the placeholder class
+    public static final class Row {
+        private final Source source;
+        private final MappingType type;
+        private final int rank;
+        private final MappingSpreadsheet.Entry entry;
+
+        Row(Source source, MappingType type, MappingSpreadsheet.Entry entry) {
+            this.source = source;
+            this.type = type;
+            this.rank = rank(type);
+            this.entry = entry;
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        public MappingType getType() {
+            return type;
+        }
+
+        public MappingSpreadsheet.Entry getEntry() {
+            return entry;
+        }
+    }
+
+    // A row overridden by one with a different mapped name or side
+    public static final class Conflict {
+        private final Row kept;
+        private final Row overridden;
+
+        Conflict(Row kept, Row overridden) {
+            this.kept = kept;
+            this.overridden = overridden;
+        }
+
+        public Row getKept() {
+            return kept;
+        }
+
+        public Row getOverridden() {
+            return overridden;
+        }
+    }
+
+    public static final class Result {
+        private final MappingSpreadsheet merged = new MappingSpreadsheet();
+        private final List<Conflict> conflicts = new ArrayList<>();
+        private final SpreadsheetDiagnostics[] diagnostics;
+        private final int[] kept;
+        private final List<Source> sortedInMemory = new ArrayList<>();
+        private int overridden;
+
+        Result(int sources) {
+            this.diagnostics = new SpreadsheetDiagnostics[sources];
+            for (int i = 0; i < sources; i++) {
+                diagnostics[i] = new SpreadsheetDiagnostics();
+            }
+            this.kept = new int[sources];
+        }
+
+        public MappingSpreadsheet getMerged() {
+            return merged;
+        }
+
+        // In merge order
+        public List<Conflict> getConflicts() {
+            return conflicts;
+        }
+
+        // Problems found in a spreadsheet source; always empty for exports
+        public SpreadsheetDiagnostics getDiagnostics(Source source) {
+            return diagnostics[source.priority];
+        }
+
+        // Number of merged rows taken from the source
+        public int getKept(Source source) {
+            return kept[source.priority];
+        }
+
+        // Rows left out for another source's, whether or not they differ
+        public int getOverridden() {
+            return overridden;
+        }
+
+        // Spreadsheets that weren't in SRG id order, and so were read whole and sorted, in priority order
+        public List<Source> getSortedInMemory() {
+            return sortedInMemory;
+        }
+    }
+
+    private abstract static class Cursor implements Closeable {
+        final Source source;
+        Row row;
+
+        Cursor(Source source) {
+            this.source = source;
+        }
+
+        // Moves to the next row, returning false once there are none left
+        final boolean advance() {
+            row = next();
+            return row != null;
+        }
+
+        abstract Row next();
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    // Reads a spreadsheet CSV as it's merged. Of rows repeating a name the last is kept, as MappingSpreadsheet.read
+    // would.
+    private final class StreamingCursor extends Cursor {
+        private final MappingSpreadsheet.RowReader reader;
+        private Row previous;
+        private Row pending;
+
+        StreamingCursor(Source source, SpreadsheetDiagnostics diagnostics) {
+            super(source);
+            this.reader = new MappingSpreadsheet.RowReader(source.file, diagnostics);
+            this.pending = read();
+        }
+
+        @Override
+        Row next() {
+            while (pending != null) {
+                Row next = pending;
+                pending = read();
+                while (pending != null && compareKeys(pending, next) == 0) {
+                    next = pending;
+                    pending = read();
+                }
+                if (previous != null && compareKeys(next, previous) < 0) {
+                    throw new IllegalStateException(source + " changed while being merged");
+                }
+                previous = next;
+                if (next.entry.isValidated() || allowUnvalidated) {
+                    return next;
+                }
+            }
+            return null;
+        }
+
+        private Row read() {
+            MappingSpreadsheet.Entry entry = reader.next();
+            return entry != null ? new Row(source, reader.getType(), entry) : null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    // Walks sorted tables of rows, loading each when the merge reaches its type. The sort keeps rows sharing a name in
+    // the order they were loaded, and only the last of them is used.
+    private abstract static class TableCursor extends Cursor {
+        private int rank = -1;
+        private MappingSpreadsheet.Entry[] table = new MappingSpreadsheet.Entry[0];
+        private int position;
+
+        TableCursor(Source source) {
+            super(source);
+        }
+
+        abstract Collection<MappingSpreadsheet.Entry> load(MappingType type);
+
+        @Override
+        final Row next() {
+            while (position == table.length) {
+                if (++rank == ORDER.length) {
+                    return null;
+                }
+                table = MappingSpreadsheet.sortById(load(ORDER[rank]));
+                position = 0;
+            }
+            while (position + 1 < table.length && table[position].compareTo(table[position + 1]) == 0) {
+                position++;
+            }
+            return new Row(source, ORDER[rank], table[position++]);
+        }
+    }
+
+    // A spreadsheet read whole
+    private final class SpreadsheetCursor extends TableCursor {
+        private final MappingSpreadsheet spreadsheet;
+
+        SpreadsheetCursor(Source source, MappingSpreadsheet spreadsheet) {
+            super(source);
+            this.spreadsheet = spreadsheet;
+        }
+
+        @Override
+        Collection<MappingSpreadsheet.Entry> load(MappingType type) {
+            Collection<MappingSpreadsheet.Entry> entries = type == MappingType.METHOD
+                ? spreadsheet.getMethods().values() : type == MappingType.FIELD ? spreadsheet.getFields().values()
+                : spreadsheet.getParams().values();
+            if (allowUnvalidated) {
+                return entries;
+            }
+            List<MappingSpreadsheet.Entry> validated = new ArrayList<>(entries.size());
+            for (MappingSpreadsheet.Entry entry : entries) {
+                if (entry.isValidated()) {
+                    validated.add(entry);
+                }
+            }
+            return validated;
+        }
+    }
+
+    // An export zip read one CSV at a time, or a binary export read whole
+    private final class ExportCursor extends TableCursor {
+        private final FileSystem zip;
+        private final MappingExport export;
+        private final StringPool pool = new StringPool();
+
+        ExportCursor(Source source) {
+            super(source);
+            try {
+                this.zip = FileSystems.newFileSystem(source.file.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException("Exception while reading mappings export file", e);
+            }
+            this.export = null;
+        }
+
+        ExportCursor(Source source, MappingExport export) {
+            super(source);
+            this.zip = null;
+            this.export = export;
+        }
+
+        @Override
+        Collection<MappingSpreadsheet.Entry> load(MappingType type) {
+            if (export != null) {
+                List<MappingSpreadsheet.Entry> entries = new ArrayList<>();
+                Collection<? extends MappingExport.Entry> rows = type == MappingType.METHOD
+                    ? export.getMethods().values() : type == MappingType.FIELD ? export.getFields().values()
+                    : export.getParams().values();
+                for (MappingExport.Entry row : rows) {
+                    entries.add(new MappingSpreadsheet.Entry(true, placeholderClassName, row.getUnmappedName(),
+                        row.getMappedName(), row.getSide(), row instanceof MappingExport.MemberEntry
+                        ? ((MappingExport.MemberEntry) row).getJavadoc() : ""));
+                }
+                return entries;
+            }
+
+            String csv = type == MappingType.METHOD ? MappingExport.METHODS_CSV
+                : type == MappingType.FIELD ? MappingExport.FIELDS_CSV : MappingExport.PARAMS_CSV;
+            List<MappingSpreadsheet.Entry> entries = new ArrayList<>();
+            try (CSVReader reader = new CSVReader(Files.newBufferedReader(zip.getPath(csv)))) {
+                reader.readNext(); // Skip header
+
+                for (String[] line : reader) {
+                    entries.add(new MappingSpreadsheet.Entry(true, placeholderClassName, line[0],
+                        pool.intern(line[1]), Side.from(Integer.parseInt(line[2])),
+                        type == MappingType.PARAM ? "" : pool.intern(line[3])));
+                }
+            } catch (CsvValidationException e) {
+                throw new RuntimeException("Exception while reading " + csv, e);
+            } catch (IOException e) {
+                throw new RuntimeException("Exception while reading mappings export file", e);
+            }
+            return entries;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (zip != null) {
+                zip.close();
+            }
+        }
+    }
+}
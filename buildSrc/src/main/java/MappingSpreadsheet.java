@@ -1,34 +1,52 @@
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
-import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvMalformedLineException;
+import com.opencsv.exceptions.CsvValidationException;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.LinkedHashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class MappingSpreadsheet {
     private static final String[] HEADER = { "Validated", "Class Name", "Unmapped Name", "Mapped Name",
         "Side(auto, 0 client 2 both)", "JavaDocs Comment" };
-    private static final Pattern METHOD_SRG = Pattern.compile("func_\\d+_\\w+_?");
-    private static final Pattern FIELD_SRG = Pattern.compile("field_\\d+_\\w+_?");
-    private static final Pattern PARAM_SRG = Pattern.compile("p_i?\\d+_\\d+_?");
-    private static final Pattern SRG_NUMBER = Pattern.compile("\\w+_i?(\\d+).*");
 
-    private final Map<String, Entry> methods = new LinkedHashMap<>(3000);
-    private final Map<String, Entry> fields = new LinkedHashMap<>(3000);
-    private final Map<String, Entry> params = new LinkedHashMap<>(3000);
+    // Rough size of a spreadsheet row, used to size the maps up front from the file length
+    private static final int AVERAGE_ROW_LENGTH = 64;
+
+    // Files are only split into chunks of at least this many bytes, a few per thread to even out the work
+    private static final long MIN_CHUNK_LENGTH = 1 << 20;
+    private static final long CHUNKS_PER_THREAD = 4;
+
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    private final SrgMap<Entry> methods;
+    private final SrgMap<Entry> fields;
+    private final SrgMap<Entry> params;
 
     public MappingSpreadsheet() {
+        this(0, 0, 0);
+    }
+
+    public MappingSpreadsheet(int expectedMethods, int expectedFields, int expectedParams) {
+        this.methods = new SrgMap<>(expectedMethods);
+        this.fields = new SrgMap<>(expectedFields);
+        this.params = new SrgMap<>(expectedParams);
     }
 
     public void addMethod(String name, Entry newEntry) {
@@ -43,6 +61,20 @@ public class MappingSpreadsheet {
         this.params.put(name, newEntry);
     }
 
+    public void add(MappingType type, Entry newEntry) {
+        switch (type) {
+            case METHOD:
+                addMethod(newEntry.getUnmappedName(), newEntry);
+                break;
+            case FIELD:
+                addField(newEntry.getUnmappedName(), newEntry);
+                break;
+            case PARAM:
+                addParam(newEntry.getUnmappedName(), newEntry);
+                break;
+        }
+    }
+
     public boolean hasMethod(String name) {
         return this.methods.containsKey(name);
     }
@@ -55,6 +87,18 @@ public class MappingSpreadsheet {
         return this.params.containsKey(name);
     }
 
+    public boolean hasMethod(int srgId, String name) {
+        return this.methods.contains(srgId, name);
+    }
+
+    public boolean hasField(int srgId, String name) {
+        return this.fields.contains(srgId, name);
+    }
+
+    public boolean hasParam(int srgId, String name) {
+        return this.params.contains(srgId, name);
+    }
+
     public Entry getMethod(String name) {
         return this.methods.get(name);
     }
@@ -86,6 +130,7 @@ public class MappingSpreadsheet {
         private final String mappedName;
         private final Side side;
         private final String javadocComment;
+        private final int srgId;
 
         Entry(boolean validated,
             String className,
@@ -100,6 +145,7 @@ public class MappingSpreadsheet {
             this.mappedName = mappedName;
             this.side = side;
             this.javadocComment = javadocComment;
+            this.srgId = SrgNames.parseId(unmappedName);
         }
 
         public boolean isValidated() {
@@ -126,6 +172,10 @@ public class MappingSpreadsheet {
             return javadocComment;
         }
 
+        public int getSrgId() {
+            return srgId;
+        }
+
         public String[] toCSVLine() {
             return new String[] {
                 Boolean.toString(validated).toUpperCase(Locale.ROOT),
@@ -137,100 +187,330 @@ public class MappingSpreadsheet {
             };
         }
 
+        // Same order as the entries of one kind are written in
         @Override
         public int compareTo(Entry other) {
-            Matcher matcher = SRG_NUMBER.matcher(this.unmappedName);
-            //noinspection ResultOfMethodCallIgnored
-            matcher.find();
-            int a1 = Integer.parseInt(matcher.group(1));
-            //noinspection ResultOfMethodCallIgnored
-            matcher.reset(other.unmappedName).find();
-            int a2 = Integer.parseInt(matcher.group(1));
-            return a1 - a2;
+            int compare = Integer.compare(this.srgId, other.srgId);
+            return compare != 0 ? compare : this.unmappedName.compareTo(other.unmappedName);
         }
     }
 
+    // Fields, then methods, then params, each in SRG id order
     public void write(File output) throws IOException {
-        List<Entry> entries = new ArrayList<>(this.fields.size() + this.methods.size() + this.params.size());
-        entries.addAll(this.fields.values());
-        entries.addAll(this.methods.values());
-        entries.addAll(this.params.values());
-
-        entries.sort(Comparator.naturalOrder());
-
         try (CSVWriter writer = new CSVWriter(new FileWriter(output))) {
             writer.writeNext(HEADER);
-            for (Entry field : this.fields.values()) {
+            for (Entry field : sortById(this.fields.values())) {
                 writer.writeNext(field.toCSVLine());
             }
 
-            for (Entry methods : this.methods.values()) {
+            for (Entry methods : sortById(this.methods.values())) {
                 writer.writeNext(methods.toCSVLine());
             }
 
-            for (Entry params : this.params.values()) {
+            for (Entry params : sortById(this.params.values())) {
                 writer.writeNext(params.toCSVLine());
             }
         }
     }
 
+    // Sorts the entries into their natural order with an LSD radix sort on the SRG id, taking only as many passes as
+    // the largest id needs. Only the short runs sharing an id, like the params of one method, are compared by name.
+    static Entry[] sortById(Collection<Entry> entries) {
+        Entry[] sorted = entries.toArray(new Entry[0]);
+        Entry[] buffer = new Entry[sorted.length];
+        int[] keys = new int[sorted.length];
+        int[] keyBuffer = new int[sorted.length];
+        int keyBits = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            keys[i] = sorted[i].srgId + 1; // NO_ID sorts first
+            keyBits |= keys[i];
+        }
+
+        int[] offsets = new int[RADIX_MASK + 2];
+        for (int shift = 0; shift < Integer.SIZE && (keyBits >>> shift) != 0; shift += RADIX_BITS) {
+            Arrays.fill(offsets, 0);
+            for (int key : keys) {
+                offsets[((key >>> shift) & RADIX_MASK) + 1]++;
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+            for (int i = 0; i < keys.length; i++) {
+                int target = offsets[(keys[i] >>> shift) & RADIX_MASK]++;
+                keyBuffer[target] = keys[i];
+                buffer[target] = sorted[i];
+            }
+            Entry[] swap = sorted;
+            sorted = buffer;
+            buffer = swap;
+            int[] keySwap = keys;
+            keys = keyBuffer;
+            keyBuffer = keySwap;
+        }
+
+        for (int start = 0, end; start < sorted.length; start = end) {
+            end = start + 1;
+            while (end < sorted.length && keys[end] == keys[start]) {
+                end++;
+            }
+            if (end - start > 1) {
+                Arrays.sort(sorted, start, end);
+            }
+        }
+        return sorted;
+    }
+
+    // Prints a summary of any problems found to System.err
     public static MappingSpreadsheet read(File spreadsheet) {
-        MappingSpreadsheet mappings = new MappingSpreadsheet();
+        SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics();
+        MappingSpreadsheet mappings = read(spreadsheet, diagnostics);
+        if (!diagnostics.isEmpty()) {
+            System.err.println(diagnostics.summary());
+        }
+        return mappings;
+    }
+
+    public static MappingSpreadsheet read(File spreadsheet, SpreadsheetDiagnostics diagnostics) {
+        int expectedRows = (int) Math.min(Integer.MAX_VALUE, spreadsheet.length() / AVERAGE_ROW_LENGTH);
+        MappingSpreadsheet mappings = new MappingSpreadsheet(expectedRows / 3, expectedRows / 3, expectedRows / 3);
+        read(spreadsheet, mappings::add, diagnostics);
+        return mappings;
+    }
+
+    // Same result as read(File, SpreadsheetDiagnostics), with chunks of the file parsed on the pool. Chunks end at line
+    // breaks outside quotes and are added in file order, so later rows still replace earlier ones. Should a chunk
+    // boundary land inside a quoted field after all, the chunk before it ends unterminated and the whole file is read
+    // sequentially instead. Small files are read sequentially too, as is everything without a pool of several threads.
+    // Experimental: it hasn't yet been measured to be faster than reading sequentially on a multi-core machine.
+    public static MappingSpreadsheet read(File spreadsheet, SpreadsheetDiagnostics diagnostics, ForkJoinPool pool) {
+        return read(spreadsheet, diagnostics, pool, MIN_CHUNK_LENGTH);
+    }
+
+    // As read(File, SpreadsheetDiagnostics, ForkJoinPool), splitting into chunks of at least minChunkLength bytes
+    static MappingSpreadsheet read(File spreadsheet, SpreadsheetDiagnostics diagnostics, ForkJoinPool pool,
+        long minChunkLength) {
+        int chunks = pool == null || pool.getParallelism() < 2 ? 1
+            : (int) Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, spreadsheet.length() / minChunkLength);
+        if (chunks < 2) {
+            return read(spreadsheet, diagnostics);
+        }
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(spreadsheet.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException("Exception while reading spreadsheet file", e);
+        }
+        int[] bounds = splitRecords(data, chunks);
+        // One pool for all the chunks, so a string repeated across them is still kept once
+        StringPool strings = StringPool.concurrent();
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>(bounds.length - 1);
+        for (int c = 0; c + 1 < bounds.length; c++) {
+            int start = bounds[c];
+            int end = bounds[c + 1];
+            boolean first = c == 0;
+            SpreadsheetDiagnostics chunkDiagnostics = diagnostics.forPart();
+            tasks.add(pool.submit(() -> Chunk.parse(data, start, end, first, strings, chunkDiagnostics)));
+        }
+        List<Chunk> parsed = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<Chunk> task : tasks) {
+            Chunk chunk = task.join();
+            if (chunk.unterminated) {
+                return read(spreadsheet, diagnostics);
+            }
+            parsed.add(chunk);
+        }
+
+        int expectedRows = data.length / AVERAGE_ROW_LENGTH;
+        MappingSpreadsheet mappings = new MappingSpreadsheet(expectedRows / 3, expectedRows / 3, expectedRows / 3);
+        int lineOffset = 0;
+        for (Chunk chunk : parsed) {
+            for (int i = 0; i < chunk.entries.size(); i++) {
+                mappings.add(chunk.types.get(i), chunk.entries.get(i));
+            }
+            diagnostics.merge(chunk.diagnostics, lineOffset);
+            lineOffset += chunk.records;
+        }
+        return mappings;
+    }
+
+    // Offsets splitting the data into at most the given number of similar ranges, each but the last ending just after
+    // a line break outside quotes. Quotes are tracked as OpenCSV's default parser sees them in well-formed files, with
+    // backslash escaping a quote or another backslash.
+    static int[] splitRecords(byte[] data, int chunks) {
+        int[] bounds = new int[chunks + 1];
+        int count = 1;
+        boolean quoted = false;
+        for (int i = 0; i < data.length - 1 && count < chunks; i++) {
+            byte b = data[i];
+            if (b == '\\' && (data[i + 1] == '"' || data[i + 1] == '\\')) {
+                i++;
+            } else if (b == '"') {
+                quoted = !quoted;
+            } else if (b == '\n' && !quoted && i + 1 >= (long) data.length * count / chunks) {
+                bounds[count++] = i + 1;
+            }
+        }
+        bounds[count] = data.length;
+        return Arrays.copyOf(bounds, count + 1);
+    }
+
+    public static void read(File spreadsheet, EntryConsumer consumer, SpreadsheetDiagnostics diagnostics) {
         if (!spreadsheet.exists()) {
             throw new IllegalArgumentException("Spreadsheet file does not exist");
         }
 
-        List<String[]> lines;
         try (CSVReader reader = new CSVReader(new FileReader(spreadsheet))) {
-            lines = reader.readAll();
-        } catch (IOException | CsvException e) {
+            readRecords(reader, true, new StringPool(), consumer, diagnostics);
+        } catch (IOException | CsvValidationException e) {
             throw new RuntimeException("Exception while reading spreadsheet file", e);
         }
+    }
+
+    // Returns the number of records read, including the header and invalid ones
+    private static int readRecords(CSVReader reader, boolean header, StringPool pool, EntryConsumer consumer,
+        SpreadsheetDiagnostics diagnostics) throws IOException, CsvValidationException {
+        String[] line;
+        int i;
+        for (i = 0; (line = reader.readNext()) != null; i++) {
+            readRecord(line, i, header, pool, consumer, diagnostics);
+        }
+        return i;
+    }
 
-        Matcher funcMatcher = METHOD_SRG.matcher("");
-        Matcher fieldMatcher = FIELD_SRG.matcher("");
-        Matcher paramMatcher = PARAM_SRG.matcher("");
-        for (int i = 0, linesSize = lines.size(); i < linesSize; i++) {
-            String[] line = lines.get(i);
+    // Passes the record's entry to the consumer, unless it's the header or invalid, which is reported
+    private static void readRecord(String[] line, int i, boolean header, StringPool pool, EntryConsumer consumer,
+        SpreadsheetDiagnostics diagnostics) {
 
-            // Format:
-            // "Validated","Class Name","Unmapped Name","Mapped Name","Side(auto, 0 client 2 both)","JavaDocs Comment"
+        // Format:
+        // "Validated","Class Name","Unmapped Name","Mapped Name","Side(auto, 0 client 2 both)","JavaDocs Comment"
 
-            if (line.length != 6) {
-                System.err.println("Invalid line #" + i + ": " + Arrays.toString(line));
-                continue;
-            }
+        if (line.length != 6) {
+            diagnostics.report(SpreadsheetDiagnostics.Problem.INVALID_LINE, i, line, -1);
+            return;
+        }
+
+        if (i == 0 && header) return; // Skip header
+
+        String validateString = line[0];
+        boolean validate = false;
+        if (validateString.equals("TRUE")) {
+            validate = true;
+        } else if (!validateString.equals("FALSE")) {
+            // Defaults to FALSE
+            diagnostics.report(SpreadsheetDiagnostics.Problem.INVALID_VALIDATED, i, line, 0);
+        }
+
+        int sideNumber = parseSide(line[4]);
+        if (sideNumber < 0) {
+            diagnostics.report(SpreadsheetDiagnostics.Problem.INVALID_SIDE, i, line, 4);
+            return;
+        }
+        Side side = Side.from(sideNumber);
+
+        String unmapped = line[2];
+        MappingType type = SrgNames.classify(unmapped);
+        if (type == null) {
+            diagnostics.report(SpreadsheetDiagnostics.Problem.INVALID_UNMAPPED_NAME, i, line, 2);
+            return;
+        }
+        consumer.accept(type, new MappingSpreadsheet.Entry(validate, pool.intern(line[1]), unmapped,
+            pool.intern(line[3]), side, pool.intern(line[5])));
+    }
 
-            if (i == 0) continue; // Skip header
+    // The side's number, or -1 if it isn't one
+    private static int parseSide(String side) {
+        try {
+            int number = Integer.parseInt(side);
+            return number >= 0 && number < Side.values().length ? number : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 
-            String validateString = line[0];
-            boolean validate = false;
-            if (validateString.equals("TRUE")) {
-                validate = true;
-            } else if (!validateString.equals("FALSE")) {
-                System.err.println("Line #" + i + " has invalid 'validate' value: " + validateString + ", defaulting to FALSE");
+    // The rows of one range of the file, kept in order until they can be added after the ranges before it
+    private static class Chunk {
+        private final List<MappingType> types = new ArrayList<>();
+        private final List<Entry> entries = new ArrayList<>();
+        private final SpreadsheetDiagnostics diagnostics;
+        private int records;
+        private boolean unterminated;
+
+        private Chunk(SpreadsheetDiagnostics diagnostics) {
+            this.diagnostics = diagnostics;
+        }
+
+        static Chunk parse(byte[] data, int start, int end, boolean first, StringPool pool,
+            SpreadsheetDiagnostics diagnostics) {
+            Chunk chunk = new Chunk(diagnostics);
+            // Decoded as FileReader would decode the whole file
+            try (CSVReader reader = new CSVReader(new InputStreamReader(
+                new ByteArrayInputStream(data, start, end - start), Charset.defaultCharset()))) {
+                chunk.records = readRecords(reader, first, pool, (type, entry) -> {
+                    chunk.types.add(type);
+                    chunk.entries.add(entry);
+                }, diagnostics);
+            } catch (CsvMalformedLineException e) {
+                chunk.unterminated = true;
+            } catch (IOException | CsvValidationException e) {
+                throw new RuntimeException("Exception while reading spreadsheet file", e);
             }
+            return chunk;
+        }
+    }
 
-            String sideString = line[4];
-            Side side;
+    // Reads a spreadsheet CSV one row at a time, for callers that go through it once without keeping it in memory
+    public static class RowReader implements Closeable {
+        private final CSVReader reader;
+        private final SpreadsheetDiagnostics diagnostics;
+        private final StringPool pool = new StringPool();
+        private final EntryConsumer current = (type, entry) -> {
+            this.type = type;
+            this.entry = entry;
+        };
+        private int line;
+        private MappingType type;
+        private Entry entry;
+
+        public RowReader(File spreadsheet, SpreadsheetDiagnostics diagnostics) {
+            if (!spreadsheet.exists()) {
+                throw new IllegalArgumentException("Spreadsheet file does not exist");
+            }
             try {
-                side = Side.from(Integer.parseInt(sideString));
-            } catch (NumberFormatException e) {
-                System.err.println("Line #" + i + " has invalid 'side' value: " + sideString);
-                continue;
+                this.reader = new CSVReader(new FileReader(spreadsheet));
+            } catch (IOException e) {
+                throw new RuntimeException("Exception while reading spreadsheet file", e);
             }
+            this.diagnostics = diagnostics;
+        }
 
-            String unmapped = line[2];
-            if (funcMatcher.reset(unmapped).matches()) {
-                mappings.addMethod(unmapped, new MappingSpreadsheet.Entry(validate, line[1], unmapped, line[3], side, line[5]));
-            } else if (fieldMatcher.reset(unmapped).matches()) {
-                mappings.addField(unmapped, new MappingSpreadsheet.Entry(validate, line[1], unmapped, line[3], side, line[5]));
-            } else if (paramMatcher.reset(unmapped).matches()) {
-                mappings.addParam(unmapped, new MappingSpreadsheet.Entry(validate, line[1], unmapped, line[3], side, line[5]));
-            } else {
-                System.err.println("Line #" + i + " has invalid unmapped name: " + unmapped);
+        // The next valid row, or null at the end of the file
+        public Entry next() {
+            type = null;
+            entry = null;
+            try {
+                String[] record;
+                while (entry == null && (record = reader.readNext()) != null) {
+                    readRecord(record, line++, true, pool, current, diagnostics);
+                }
+            } catch (IOException | CsvValidationException e) {
+                throw new RuntimeException("Exception while reading spreadsheet file", e);
             }
+            return entry;
         }
-        return mappings;
+
+        // The type of the row last returned by next
+        public MappingType getType() {
+            return type;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    public interface EntryConsumer {
+        void accept(MappingType type, Entry entry);
     }
 }
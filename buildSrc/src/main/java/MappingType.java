@@ -0,0 +1,5 @@
+public enum MappingType {
+    METHOD,
+    FIELD,
+    PARAM
+}
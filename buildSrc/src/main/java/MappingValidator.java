@@ -0,0 +1,219 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+// Checks across the rows of combined mappings, which reading the spreadsheet row by row can't catch. Each check builds
+// the one index it joins against (names by class, or method ids) in a single pass over the rows and looks every row
+// up in it; the checks run as separate tasks on the executor. Rows from the base export carry the placeholder class
+// name rather than their own, so only spreadsheet rows are grouped by class.
+public final class MappingValidator {
+    // Errors are what the tasks' problem thresholds count, so they can fail the build; warnings are only reported
+    public enum Check {
+        // A warning only: overloads legitimately share a name, so this includes every overload in a class
+        DUPLICATE_METHOD_NAME(false),
+        DUPLICATE_FIELD_NAME(true),
+        // Params of a method, not a constructor, whose id no method has
+        ORPHANED_PARAM(true);
+
+        private final boolean error;
+
+        Check(boolean error) {
+            this.error = error;
+        }
+
+        public boolean isError() {
+            return error;
+        }
+
+        public String getDescription() {
+            return name().toLowerCase(Locale.ROOT).replace('_', ' ') + (error ? "" : " (warning)");
+        }
+    }
+
+    private MappingValidator() {
+    }
+
+    public static Report validate(MappingSpreadsheet mappings, String placeholderClassName, int maxSamples,
+        Executor executor) {
+        CompletableFuture<Report> methods = CompletableFuture.supplyAsync(() -> checkDuplicates(
+            Check.DUPLICATE_METHOD_NAME, mappings.getMethods().values(), placeholderClassName, maxSamples), executor);
+        CompletableFuture<Report> fields = CompletableFuture.supplyAsync(() -> checkDuplicates(
+            Check.DUPLICATE_FIELD_NAME, mappings.getFields().values(), placeholderClassName, maxSamples), executor);
+        CompletableFuture<Report> params = CompletableFuture.supplyAsync(() -> checkParams(mappings, maxSamples),
+            executor);
+
+        Report report = new Report(maxSamples);
+        for (CompletableFuture<Report> part : List.of(methods, fields, params)) {
+            try {
+                report.merge(part.join());
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+        return report;
+    }
+
+    private static Report checkDuplicates(Check check, Collection<MappingSpreadsheet.Entry> entries,
+        String placeholderClassName, int maxSamples) {
+        Report report = new Report(maxSamples);
+        Map<String, Map<String, MappingSpreadsheet.Entry>> byClass = new HashMap<>();
+        for (MappingSpreadsheet.Entry entry : entries) {
+            String className = entry.getClassName();
+            if (className == null || className.isEmpty() || className.equals(placeholderClassName)
+                || entry.getMappedName().isBlank()) {
+                continue;
+            }
+            MappingSpreadsheet.Entry first = byClass.computeIfAbsent(className, name -> new HashMap<>())
+                .putIfAbsent(entry.getMappedName(), entry);
+            if (first != null) {
+                report.report(check, () -> first.getUnmappedName() + " and " + entry.getUnmappedName() + " in "
+                    + className + " are both " + entry.getMappedName());
+            }
+        }
+        return report;
+    }
+
+    private static Report checkParams(MappingSpreadsheet mappings, int maxSamples) {
+        Report report = new Report(maxSamples);
+        Set<Integer> methodIds = new HashSet<>(mappings.getMethods().size() * 2);
+        for (MappingSpreadsheet.Entry method : mappings.getMethods().values()) {
+            methodIds.add(method.getSrgId());
+        }
+        for (MappingSpreadsheet.Entry param : mappings.getParams().values()) {
+            String name = param.getUnmappedName();
+            // p_i<id>_ belong to constructors, which have no method row
+            if (name.startsWith("p_i") || methodIds.contains(param.getSrgId())) {
+                continue;
+            }
+            report.report(Check.ORPHANED_PARAM, () -> name + " (" + param.getMappedName() + ") has no func_"
+                + param.getSrgId() + "_");
+        }
+        return report;
+    }
+
+    // A count per check, plus the first few problems of each
+    public static class Report {
+        private final int maxSamples;
+        private final int[] counts = new int[Check.values().length];
+        private final List<List<String>> samples = new ArrayList<>();
+        private int total;
+
+        Report(int maxSamples) {
+            this.maxSamples = maxSamples;
+            for (int i = 0; i < counts.length; i++) {
+                samples.add(new ArrayList<>(Math.min(maxSamples, 16)));
+            }
+        }
+
+        // The sample is only formatted if it's kept
+        private void report(Check check, Sample sample) {
+            counts[check.ordinal()]++;
+            total++;
+            List<String> kept = samples.get(check.ordinal());
+            if (kept.size() < maxSamples) {
+                kept.add(sample.format());
+            }
+        }
+
+        private void merge(Report other) {
+            for (Check check : Check.values()) {
+                counts[check.ordinal()] += other.counts[check.ordinal()];
+                List<String> kept = samples.get(check.ordinal());
+                for (String sample : other.samples.get(check.ordinal())) {
+                    if (kept.size() < maxSamples) {
+                        kept.add(sample);
+                    }
+                }
+            }
+            total += other.total;
+        }
+
+        public boolean isEmpty() {
+            return total == 0;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        // Problems of the checks that are errors, which the thresholds apply to
+        public int getErrors() {
+            int errors = 0;
+            for (Check check : Check.values()) {
+                if (check.isError()) {
+                    errors += counts[check.ordinal()];
+                }
+            }
+            return errors;
+        }
+
+        public int getCount(Check check) {
+            return counts[check.ordinal()];
+        }
+
+        public List<String> getSamples(Check check) {
+            return Collections.unmodifiableList(samples.get(check.ordinal()));
+        }
+
+        public String summary() {
+            int errors = getErrors();
+            StringBuilder summary = new StringBuilder().append(total).append(total == 1 ? " problem" : " problems")
+                .append(" in combined mappings, ").append(errors).append(errors == 1 ? " error" : " errors");
+            for (Check check : Check.values()) {
+                int count = counts[check.ordinal()];
+                if (count == 0) {
+                    continue;
+                }
+                summary.append(String.format(Locale.ROOT, "%n  %-24s %8d", check.getDescription(), count));
+                for (String sample : samples.get(check.ordinal())) {
+                    summary.append(String.format(Locale.ROOT, "%n    %s", sample));
+                }
+                if (count > samples.get(check.ordinal()).size()) {
+                    summary.append(String.format(Locale.ROOT, "%n    ..."));
+                }
+            }
+            return summary.toString();
+        }
+
+        public void write(File output) throws IOException {
+            try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+                writer.write("{\n  \"total\": " + total + ",\n  \"errors\": " + getErrors()
+                    + ",\n  \"problems\": {");
+                boolean first = true;
+                for (Check check : Check.values()) {
+                    writer.write(first ? "\n" : ",\n");
+                    first = false;
+                    writer.write("    \"" + check.name().toLowerCase(Locale.ROOT) + "\": {\"error\": "
+                        + check.isError() + ", \"count\": " + counts[check.ordinal()] + ", \"samples\": [");
+                    List<String> kept = samples.get(check.ordinal());
+                    for (int i = 0; i < kept.size(); i++) {
+                        writer.write((i == 0 ? "" : ", ") + SpreadsheetDiagnostics.quote(kept.get(i)));
+                    }
+                    writer.write("]}");
+                }
+                writer.write("\n  }\n}\n");
+            }
+        }
+    }
+
+    private interface Sample {
+        String format();
+    }
+}
@@ -0,0 +1,187 @@
+import com.opencsv.CSVWriter;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Merges any number of spreadsheets and exports into one spreadsheet (see MappingMerger), like CombineMappings does
+// for one spreadsheet over one base export
+@CacheableTask
+public class MergeMappings extends DefaultTask {
+    private static final String[] CONFLICTS_HEADER = { "searge", "source", "name", "side", "overridden source",
+        "overridden name", "overridden side" };
+
+    private List<File> sources = new ArrayList<>();
+    private List<String> rules = new ArrayList<>();
+    private String placeholderClassName;
+    private boolean allowUnvalidated;
+    private File output;
+    private File conflictsOutput;
+
+    public MergeMappings() {
+        // Timestamps are local to this checkout, so a result depending on them isn't worth sharing
+        getOutputs().cacheIf("newest-wins depends on when the sources were last modified",
+            task -> !parseRules().contains(MappingMerger.Rule.NEWEST_WINS));
+    }
+
+    // Spreadsheet CSVs, export zips or binary mappings, highest priority first
+    @InputFiles
+    @PathSensitive(PathSensitivity.NAME_ONLY)
+    public List<File> getSources() {
+        return sources;
+    }
+
+    public void setSources(List<File> sources) {
+        this.sources = sources;
+    }
+
+    // The files are fingerprinted without regard to their order, which decides their priority
+    @Input
+    public List<String> getSourceOrder() {
+        return sources.stream().map(File::getName).collect(Collectors.toList());
+    }
+
+    // Names of the rules deciding which of the rows for one name is kept, applied in order: priority, validated-first
+    // and newest-wins. Ties left by them go to the source listed first.
+    @Input
+    public List<String> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<String> rules) {
+        this.rules = rules;
+    }
+
+    // Only newest-wins depends on when the sources were last modified
+    @Input
+    public List<Long> getSourceTimestamps() {
+        if (!parseRules().contains(MappingMerger.Rule.NEWEST_WINS)) {
+            return Collections.emptyList();
+        }
+        return sources.stream().map(File::lastModified).collect(Collectors.toList());
+    }
+
+    // Class name given to rows taken from exports
+    @Input
+    @Optional
+    public String getPlaceholderClassName() {
+        return placeholderClassName;
+    }
+
+    public void setPlaceholderClassName(String placeholderClassName) {
+        this.placeholderClassName = placeholderClassName;
+    }
+
+    @Input
+    public boolean isAllowUnvalidated() {
+        return allowUnvalidated;
+    }
+
+    public void setAllowUnvalidated(boolean allowUnvalidated) {
+        this.allowUnvalidated = allowUnvalidated;
+    }
+
+    // A spreadsheet CSV, or binary mappings if the name ends in .bin
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    // Optional CSV listing every row overridden by one with a different name or side
+    @Optional
+    @OutputFile
+    public File getConflictsOutput() {
+        return conflictsOutput;
+    }
+
+    public void setConflictsOutput(File conflictsOutput) {
+        this.conflictsOutput = conflictsOutput;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        prepareOutput(output);
+        if (conflictsOutput != null) {
+            prepareOutput(conflictsOutput);
+        }
+
+        final long start = System.nanoTime();
+        final MappingMerger merger = new MappingMerger(sources, MappingMerger.precedence(parseRules()),
+            placeholderClassName, allowUnvalidated);
+        final MappingMerger.Result result = merger.merge();
+        final long millis = (System.nanoTime() - start) / 1_000_000;
+
+        for (MappingMerger.Source source : merger.getSources()) {
+            SpreadsheetDiagnostics diagnostics = result.getDiagnostics(source);
+            if (!diagnostics.isEmpty()) {
+                getLogger().warn(source + ": " + diagnostics.summary());
+            }
+        }
+        for (MappingMerger.Source source : result.getSortedInMemory()) {
+            getLogger().warn(source + " is not in SRG id order, so it was sorted in memory; write it with "
+                + "combineMappings or mergeMappings first to have it streamed");
+        }
+
+        CombineMappings.write(result.getMerged(), output);
+        if (conflictsOutput != null) {
+            writeConflicts(result.getConflicts(), conflictsOutput);
+        }
+
+        MappingSpreadsheet merged = result.getMerged();
+        getLogger().lifecycle("Merged " + sources.size() + " sources into " + merged.getMethods().size()
+            + " methods, " + merged.getFields().size() + " fields and " + merged.getParams().size() + " params in "
+            + millis + " ms; " + result.getOverridden() + " rows overridden, " + result.getConflicts().size()
+            + " of them conflicting");
+        for (MappingMerger.Source source : merger.getSources()) {
+            getLogger().lifecycle("  " + source + ": " + result.getKept(source) + " rows kept");
+        }
+    }
+
+    private List<MappingMerger.Rule> parseRules() {
+        List<MappingMerger.Rule> parsed = new ArrayList<>(rules.size());
+        for (String rule : rules) {
+            parsed.add(MappingMerger.Rule.byName(rule));
+        }
+        return parsed;
+    }
+
+    private static void writeConflicts(List<MappingMerger.Conflict> conflicts, File output) throws IOException {
+        try (CSVWriter writer = new CSVWriter(new FileWriter(output))) {
+            writer.writeNext(CONFLICTS_HEADER);
+            for (MappingMerger.Conflict conflict : conflicts) {
+                MappingSpreadsheet.Entry kept = conflict.getKept().getEntry();
+                MappingSpreadsheet.Entry overridden = conflict.getOverridden().getEntry();
+                writer.writeNext(new String[] { kept.getUnmappedName(), conflict.getKept().getSource().toString(),
+                    kept.getMappedName(), Integer.toString(kept.getSide().toNumber()),
+                    conflict.getOverridden().getSource().toString(), overridden.getMappedName(),
+                    Integer.toString(overridden.getSide().toNumber()) });
+            }
+        }
+    }
+
+    private void prepareOutput(File file) {
+        if (file.exists() && !file.delete()) {
+            getLogger().error("Unable to delete existing output at " + file);
+        }
+        if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + file);
+        }
+    }
+}
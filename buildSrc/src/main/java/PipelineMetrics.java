@@ -0,0 +1,275 @@
+import org.gradle.api.logging.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Wall time, row and byte counts, and allocated bytes for each stage of the export pipeline.
+// Stages run one after another; allocations are counted on the thread that started the stage plus any threads
+// created through threadFactory() or forkJoinThreadFactory(), so work handed to a pool is included. What a worker
+// allocated is kept after it terminates, so a stage doesn't lose it when a pool shuts down or retires a thread.
+public class PipelineMetrics {
+    private static final Pattern JSON_FIELD = Pattern.compile("\"(\\w+)\": (\"(?:[^\"\\\\]|\\\\.)*\"|-?\\d+)");
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationTracking();
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final Set<Thread> workers = new HashSet<>();
+    // Allocated by workers that have terminated; guarded by workers, along with the set
+    private long retiredBytes;
+
+    public Stage start(String name) {
+        return new Stage(this, name, System.nanoTime(), allocatedBytes());
+    }
+
+    public void add(List<Stage> stages) {
+        this.stages.addAll(stages);
+    }
+
+    public List<Stage> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    public ThreadFactory threadFactory() {
+        ThreadFactory delegate = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = delegate.newThread(() -> {
+                try {
+                    runnable.run();
+                } finally {
+                    retire(Thread.currentThread());
+                }
+            });
+            register(thread);
+            return thread;
+        };
+    }
+
+    public ForkJoinPool.ForkJoinWorkerThreadFactory forkJoinThreadFactory() {
+        return pool -> {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                @Override
+                protected void onTermination(Throwable exception) {
+                    try {
+                        retire(this);
+                    } finally {
+                        super.onTermination(exception);
+                    }
+                }
+            };
+            register(thread);
+            return thread;
+        };
+    }
+
+    private void register(Thread worker) {
+        synchronized (workers) {
+            workers.add(worker);
+        }
+    }
+
+    // Called on the worker itself as it terminates, while its allocations can still be read
+    private void retire(Thread worker) {
+        synchronized (workers) {
+            if (workers.remove(worker) && THREADS != null) {
+                long allocated = THREADS.getThreadAllocatedBytes(worker.getId());
+                if (allocated > 0) {
+                    retiredBytes += allocated;
+                }
+            }
+        }
+    }
+
+    public void log(Logger logger) {
+        for (Stage stage : stages) {
+            logger.lifecycle(String.format(Locale.ROOT, "%-20s %8.1f ms %10d rows %10d rows/s  read %9s  wrote %9s"
+                    + "  allocated %9s", stage.name, stage.wallNanos / 1e6, stage.rows, stage.getRowsPerSecond(),
+                formatBytes(stage.bytesRead), formatBytes(stage.bytesWritten), formatBytes(stage.allocatedBytes)));
+        }
+    }
+
+    public void write(File output) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"stages\": [");
+            for (int i = 0; i < stages.size(); i++) {
+                Stage stage = stages.get(i);
+                writer.write(i == 0 ? "\n" : ",\n");
+                // One stage per line, which is what read() relies on
+                writer.write(String.format(Locale.ROOT, "    {\"name\": \"%s\", \"wallNanos\": %d, \"rows\": %d, "
+                        + "\"rowsPerSecond\": %d, \"bytesRead\": %d, \"bytesWritten\": %d, \"allocatedBytes\": %d}",
+                    escape(stage.name), stage.wallNanos, stage.rows, stage.getRowsPerSecond(), stage.bytesRead,
+                    stage.bytesWritten, stage.allocatedBytes));
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    // Reads back the stages of a file written by write()
+    public static List<Stage> read(File metrics) throws IOException {
+        List<Stage> stages = new ArrayList<>();
+        for (String line : Files.readAllLines(metrics.toPath(), StandardCharsets.UTF_8)) {
+            if (!line.trim().startsWith("{\"name\"")) {
+                continue;
+            }
+
+            Stage stage = new Stage(null, null, 0, 0);
+            Matcher matcher = JSON_FIELD.matcher(line);
+            while (matcher.find()) {
+                String value = matcher.group(2);
+                switch (matcher.group(1)) {
+                    case "name":
+                        stage.name = unescape(value.substring(1, value.length() - 1));
+                        break;
+                    case "wallNanos":
+                        stage.wallNanos = Long.parseLong(value);
+                        break;
+                    case "rows":
+                        stage.rows = Long.parseLong(value);
+                        break;
+                    case "bytesRead":
+                        stage.bytesRead = Long.parseLong(value);
+                        break;
+                    case "bytesWritten":
+                        stage.bytesWritten = Long.parseLong(value);
+                        break;
+                    case "allocatedBytes":
+                        stage.allocatedBytes = Long.parseLong(value);
+                        break;
+                }
+            }
+            stages.add(stage);
+        }
+        return stages;
+    }
+
+    private long allocatedBytes() {
+        if (THREADS == null) {
+            return -1;
+        }
+        long total = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        synchronized (workers) {
+            total += retiredBytes;
+            for (Thread worker : workers) {
+                long allocated = THREADS.getThreadAllocatedBytes(worker.getId());
+                if (allocated > 0) {
+                    total += allocated;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationTracking() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 0) {
+            return "n/a";
+        } else if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String unescape(String value) {
+        return value.replace("\\\"", "\"").replace("\\\\", "\\");
+    }
+
+    public static class Stage {
+        private final PipelineMetrics metrics;
+        private String name;
+        private final long startNanos;
+        private final long startAllocated;
+        private long wallNanos;
+        private long rows;
+        private long bytesRead;
+        private long bytesWritten;
+        private long allocatedBytes;
+
+        private Stage(PipelineMetrics metrics, String name, long startNanos, long startAllocated) {
+            this.metrics = metrics;
+            this.name = name;
+            this.startNanos = startNanos;
+            this.startAllocated = startAllocated;
+        }
+
+        public Stage rows(long rows) {
+            this.rows += rows;
+            return this;
+        }
+
+        public Stage bytesRead(long bytes) {
+            this.bytesRead += bytes;
+            return this;
+        }
+
+        public Stage bytesWritten(long bytes) {
+            this.bytesWritten += bytes;
+            return this;
+        }
+
+        public void stop() {
+            wallNanos = System.nanoTime() - startNanos;
+            long allocated = metrics.allocatedBytes();
+            allocatedBytes = allocated < 0 || startAllocated < 0 ? -1 : allocated - startAllocated;
+            metrics.stages.add(this);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getRowsPerSecond() {
+            return wallNanos > 0 ? rows * 1_000_000_000L / wallNanos : 0;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+    }
+}
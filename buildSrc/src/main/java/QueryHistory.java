@@ -0,0 +1,129 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+// Logs the timelines of names in a MappingHistory, and optionally writes the export of a past day
+public class QueryHistory extends DefaultTask {
+    private File history;
+    private List<String> names = new ArrayList<>();
+    private String day;
+    private File output;
+
+    public QueryHistory() {
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getHistory() {
+        return history;
+    }
+
+    public void setHistory(File history) {
+        this.history = history;
+    }
+
+    // SRG names whose timelines are logged
+    @Input
+    public List<String> getNames() {
+        return names;
+    }
+
+    public void setNames(List<String> names) {
+        this.names = names;
+    }
+
+    // The day, as yyyyMMdd, whose export is written to the output
+    @Optional
+    @Input
+    public String getDay() {
+        return day;
+    }
+
+    public void setDay(String day) {
+        this.day = day;
+    }
+
+    @Optional
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        final MappingHistory mappingHistory = MappingHistory.open(history);
+        final List<LocalDate> dates = mappingHistory.getDates();
+        if (dates.isEmpty()) {
+            getLogger().warn("The history at " + history + " is empty");
+        } else {
+            getLogger().lifecycle("History of " + dates.size() + " days, from " + dates.get(0) + " to "
+                + dates.get(dates.size() - 1));
+        }
+
+        for (String name : names) {
+            MappingHistory.Timeline timeline = mappingHistory.getTimeline(name);
+            if (timeline == null) {
+                getLogger().lifecycle(name + " has never been in the history");
+                continue;
+            }
+            getLogger().lifecycle(name + ":");
+            MappingExport.Entry previous = null;
+            for (int version = 0; version < timeline.size(); version++) {
+                MappingExport.Entry entry = timeline.getEntry(version);
+                getLogger().lifecycle("  " + timeline.getDate(version) + " " + describe(previous, entry));
+                previous = entry;
+            }
+        }
+
+        if (day != null && output != null) {
+            if (output.exists() && !output.delete()) {
+                getLogger().error("Unable to delete existing output at " + output);
+            }
+            if (output.getParentFile() != null && !output.getParentFile().exists()
+                && !output.getParentFile().mkdirs()) {
+                getLogger().error("Unable to create parent directories for " + output);
+            }
+            final long start = System.nanoTime();
+            final MappingExport export = mappingHistory.reconstruct(LocalDate.parse(day,
+                DateTimeFormatter.BASIC_ISO_DATE));
+            getLogger().lifecycle("Rebuilt the export of " + day + " in " + (System.nanoTime() - start) / 1_000_000
+                + " ms: " + export.getMethods().size() + " methods, " + export.getFields().size() + " fields and "
+                + export.getParams().size() + " params");
+            export.write(output);
+        }
+    }
+
+    private static String describe(MappingExport.Entry previous, MappingExport.Entry entry) {
+        if (entry == null) {
+            return "removed";
+        }
+        String side = " (side " + entry.getSide().toNumber() + ")";
+        if (previous == null) {
+            return "added as " + entry.getMappedName() + side;
+        }
+        if (!previous.getMappedName().equals(entry.getMappedName())) {
+            return "renamed from " + previous.getMappedName() + " to " + entry.getMappedName() + side;
+        }
+        if (previous.getSide() != entry.getSide()) {
+            return "moved from side " + previous.getSide().toNumber() + " to " + entry.getSide().toNumber();
+        }
+        return "javadoc changed";
+    }
+}
@@ -0,0 +1,126 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Applies a mappings export to a tree of decompiled sources, renaming SRG names to mapped names (see SourceRemapper)
+@CacheableTask
+public class RemapSources extends DefaultTask {
+    private File mappings;
+    private File sources;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private File output;
+    private File metricsOutput;
+
+    // An export zip, binary mappings, or a spreadsheet CSV
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getMappings() {
+        return mappings;
+    }
+
+    public void setMappings(File mappings) {
+        this.mappings = mappings;
+    }
+
+    @InputDirectory
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public File getSources() {
+        return sources;
+    }
+
+    public void setSources(File sources) {
+        this.sources = sources;
+    }
+
+    // Number of files remapped at once
+    @Internal
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    @OutputDirectory
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    // Optional JSON file the metrics are written to; they are always logged
+    @Optional
+    @OutputFile
+    public File getMetricsOutput() {
+        return metricsOutput;
+    }
+
+    public void setMetricsOutput(File metricsOutput) {
+        this.metricsOutput = metricsOutput;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        getProject().delete(output);
+        if (!output.mkdirs()) {
+            getLogger().error("Unable to create output directory " + output);
+        }
+        if (metricsOutput != null) {
+            prepareOutput(metricsOutput);
+        }
+
+        final PipelineMetrics metrics = new PipelineMetrics();
+        PipelineMetrics.Stage stage = metrics.start("load mappings");
+        final MappingExport export = CompareCSVs.load(mappings);
+        stage.rows(export.getMethods().size() + export.getFields().size() + export.getParams().size())
+            .bytesRead(mappings.length()).stop();
+
+        stage = metrics.start("remap sources");
+        final SourceRemapper remapper = new SourceRemapper(export);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), metrics.threadFactory());
+        final long start = System.nanoTime();
+        final SourceRemapper.Stats stats;
+        try {
+            stats = remapper.remapTree(sources.toPath(), output.toPath(), executor);
+        } finally {
+            executor.shutdown();
+        }
+        final double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        // Files count as the stage's rows
+        stage.rows(stats.getFiles()).bytesRead(stats.getBytesRead()).bytesWritten(stats.getBytesWritten()).stop();
+
+        getLogger().lifecycle(String.format(Locale.ROOT, "Remapped %d files (%d changed, %d names renamed) in %.1f ms:"
+                + " %.0f files/s, %.1f MB/s", stats.getFiles(), stats.getChangedFiles(), stats.getRenamed(),
+            seconds * 1e3, stats.getFiles() / seconds, stats.getBytesRead() / seconds / (1024 * 1024)));
+        metrics.log(getLogger());
+        if (metricsOutput != null) {
+            metrics.write(metricsOutput);
+        }
+    }
+
+    private void prepareOutput(File file) {
+        if (file.exists() && !file.delete()) {
+            getLogger().error("Unable to delete existing output at " + file);
+        }
+        if (file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + file);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Serves lookups against the mappings over HTTP until the build is stopped (see MappingLookupService). The files are
+// polled, and when either changes a new index is built next to the one being served and swapped in once complete.
+public class ServeMappings extends DefaultTask {
+    private File mappings;
+    private File spreadsheet;
+    private int port = 8765;
+    private long pollInterval = 2000;
+
+    public ServeMappings() {
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    // An export zip, binary mappings, or a spreadsheet CSV
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getMappings() {
+        return mappings;
+    }
+
+    public void setMappings(File mappings) {
+        this.mappings = mappings;
+    }
+
+    // Optional spreadsheet, CSV or binary, the class names and validation state of mappings are taken from
+    @Optional
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getSpreadsheet() {
+        return spreadsheet;
+    }
+
+    public void setSpreadsheet(File spreadsheet) {
+        this.spreadsheet = spreadsheet;
+    }
+
+    @Internal
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    // Milliseconds between checks of the files for changes
+    @Internal
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    @TaskAction
+    public void act() throws IOException, InterruptedException {
+        if (System.getProperty(MappingLookupService.NO_DELAY_PROPERTY) == null) {
+            System.setProperty(MappingLookupService.NO_DELAY_PROPERTY, "true");
+            getLogger().info("Set " + MappingLookupService.NO_DELAY_PROPERTY + "=true, which only takes effect if "
+                + "no HTTP server has been started in this JVM yet; pass it in org.gradle.jvmargs to be sure");
+        } else if (!Boolean.getBoolean(MappingLookupService.NO_DELAY_PROPERTY)) {
+            getLogger().warn(MappingLookupService.NO_DELAY_PROPERTY + " is off, so each response waits out the "
+                + "client's delayed ACK, about 40 ms");
+        }
+        long start = System.nanoTime();
+        long[] stamp = stamp();
+        try (MappingLookupService service = new MappingLookupService(load(), port)) {
+            getLogger().lifecycle("Serving " + service.getIndex().size() + " mappings on http://localhost:"
+                + service.getPort() + "/ after loading them in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(pollInterval);
+                long[] newStamp = stamp();
+                if (Arrays.equals(newStamp, stamp)) {
+                    continue;
+                }
+                stamp = newStamp;
+                try {
+                    start = System.nanoTime();
+                    service.swap(load());
+                    getLogger().lifecycle("Swapped in " + service.getIndex().size() + " mappings after loading them in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms");
+                } catch (RuntimeException e) {
+                    getLogger().error("Unable to reload the mappings, still serving the previous ones", e);
+                }
+            }
+        }
+    }
+
+    private long[] stamp() {
+        return new long[] { mappings.lastModified(), mappings.length(),
+            spreadsheet != null ? spreadsheet.lastModified() : 0, spreadsheet != null ? spreadsheet.length() : 0 };
+    }
+
+    private MappingIndex load() {
+        MappingExport export = CompareCSVs.load(mappings);
+        MappingSpreadsheet rows = null;
+        if (spreadsheet != null) {
+            SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics();
+            rows = BinaryMappings.isBinary(spreadsheet) ? BinaryMappings.readSpreadsheet(spreadsheet, diagnostics)
+                : MappingSpreadsheet.read(spreadsheet, diagnostics);
+            if (!diagnostics.isEmpty()) {
+                getLogger().warn(diagnostics.summary());
+            }
+        }
+        return MappingIndex.build(export, rows);
+    }
+}
@@ -3,8 +3,14 @@ public enum Side {
     SERVER,
     BOTH;
 
+    private static final Side[] VALUES = values();
+
     public static Side from(int value) {
-        return values()[value];
+        if (value < 0 || value >= VALUES.length) {
+            throw new IllegalArgumentException("Invalid side " + value + ", expected 0 (client), 1 (server) or 2 "
+                + "(both)");
+        }
+        return VALUES[value];
     }
 
     public int toNumber() {
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// Renames the SRG names in Java sources to the names in a mappings export. Each source is scanned once as UTF-8 bytes
+// and every identifier shaped like an SRG name is looked up by its id, so the cost doesn't grow with the number of
+// mappings the way replacing one name after another does. Only whole identifiers are renamed, in code, comments and
+// strings alike.
+public class SourceRemapper {
+    private static final String SOURCE_EXTENSION = ".java";
+    private static final byte[][] PREFIXES = { "func_".getBytes(StandardCharsets.US_ASCII),
+        "field_".getBytes(StandardCharsets.US_ASCII), "p_".getBytes(StandardCharsets.US_ASCII) };
+    // p_1_2
+    private static final int MIN_NAME_LENGTH = 5;
+
+    // Mapping costs more than it saves on small files, which are read directly
+    private static final long MAP_THRESHOLD = 64 * 1024;
+
+    private static final boolean[] ASCII_IDENTIFIER_PART = new boolean[128];
+
+    static {
+        for (int c = 0; c < ASCII_IDENTIFIER_PART.length; c++) {
+            ASCII_IDENTIFIER_PART[c] = Character.isJavaIdentifierPart(c);
+        }
+    }
+
+    private final SrgMap<byte[]> names;
+
+    public SourceRemapper(MappingExport export) {
+        this.names = new SrgMap<>(export.getMethods().size() + export.getFields().size() + export.getParams().size());
+        addAll(export.getMethods().values());
+        addAll(export.getFields().values());
+        addAll(export.getParams().values());
+    }
+
+    private void addAll(Collection<? extends MappingExport.Entry> entries) {
+        for (MappingExport.Entry entry : entries) {
+            // Exports read from spreadsheets keep rows with no name yet, which must not rename anything
+            if (SrgNames.classify(entry.getUnmappedName()) != null && !entry.getMappedName().isBlank()) {
+                names.put(entry.getUnmappedName(), entry.getMappedName().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    // Remaps every .java file under input to the same path under output, copying other files as they are. Files are
+    // spread across the executor.
+    public Stats remapTree(Path input, Path output, Executor executor) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(input)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(output.resolve(input.relativize(path).toString()));
+                } else {
+                    files.add(path);
+                }
+            }
+        }
+
+        Stats stats = new Stats();
+        List<CompletableFuture<Void>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Path target = output.resolve(input.relativize(file).toString());
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    remapFile(file, target, stats);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return stats;
+    }
+
+    private void remapFile(Path file, Path target, Stats stats) throws IOException {
+        ByteBuffer remapped = null;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (file.getFileName().toString().endsWith(SOURCE_EXTENSION)) {
+                ByteBuffer source;
+                if (size >= MAP_THRESHOLD) {
+                    source = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                } else {
+                    source = ByteBuffer.allocate((int) size);
+                    while (source.hasRemaining() && channel.read(source) >= 0) {
+                        // Keep reading until full
+                    }
+                    source.flip();
+                }
+                remapped = remap(source, stats.renamed);
+            }
+        }
+
+        if (remapped != null) {
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (remapped.hasRemaining()) {
+                    channel.write(remapped);
+                }
+            }
+            stats.changedFiles.increment();
+            stats.bytesWritten.add(remapped.limit());
+        } else {
+            Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            stats.bytesWritten.add(size);
+        }
+        stats.files.increment();
+        stats.bytesRead.add(size);
+    }
+
+    // The remapped source between its position and limit, or null if it has no names to rename
+    public ByteBuffer remap(ByteBuffer source) {
+        return remap(source, new LongAdder());
+    }
+
+    private ByteBuffer remap(ByteBuffer source, LongAdder renamed) {
+        int length = source.limit();
+        ByteBuffer out = null;
+        int copied = source.position();
+        for (int i = copied; i < length; ) {
+            int start = i;
+            int part;
+            while (i < length && (part = identifierPart(source, i, length)) > 0) {
+                i += part;
+            }
+            if (i == start) {
+                i++;
+                continue;
+            }
+
+            byte[] mapped = lookup(source, start, i);
+            if (mapped == null) {
+                continue;
+            }
+            if (out == null) {
+                out = ByteBuffer.allocate((length - copied) + (length - copied) / 8);
+            }
+            out = ensureRemaining(out, start - copied + mapped.length);
+            out.put(source.duplicate().limit(start).position(copied)).put(mapped);
+            copied = i;
+            renamed.increment();
+        }
+
+        if (out == null) {
+            return null;
+        }
+        out = ensureRemaining(out, length - copied);
+        out.put(source.duplicate().limit(length).position(copied));
+        return out.flip();
+    }
+
+    // The byte length of the character at i if it can be part of a Java identifier, otherwise 0
+    private static int identifierPart(ByteBuffer source, int i, int length) {
+        int lead = source.get(i);
+        if (lead >= 0) {
+            return ASCII_IDENTIFIER_PART[lead] ? 1 : 0;
+        }
+
+        lead &= 0xFF;
+        int count;
+        int codePoint;
+        if (lead >= 0xC2 && lead <= 0xDF) {
+            count = 2;
+            codePoint = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead <= 0xEF) {
+            count = 3;
+            codePoint = lead & 0x0F;
+        } else if (lead >= 0xF0 && lead <= 0xF4) {
+            count = 4;
+            codePoint = lead & 0x07;
+        } else {
+            return 0; // Continuation byte or invalid
+        }
+        if (i + count > length) {
+            return 0;
+        }
+        for (int k = 1; k < count; k++) {
+            int next = source.get(i + k) & 0xFF;
+            if ((next & 0xC0) != 0x80) {
+                return 0;
+            }
+            codePoint = codePoint << 6 | next & 0x3F;
+        }
+        return Character.isJavaIdentifierPart(codePoint) ? count : 0;
+    }
+
+    private byte[] lookup(ByteBuffer source, int start, int end) {
+        if (end - start < MIN_NAME_LENGTH || !hasPrefix(source, start, end)) {
+            return null;
+        }
+        byte[] token = new byte[end - start];
+        source.get(start, token);
+        // SRG names are ASCII, so anything else decodes to a name that can't match
+        String name = new String(token, StandardCharsets.ISO_8859_1);
+        return SrgNames.classify(name) != null ? names.get(name) : null;
+    }
+
+    private static boolean hasPrefix(ByteBuffer source, int start, int end) {
+        for (byte[] prefix : PREFIXES) {
+            if (prefix.length <= end - start && source.get(start) == prefix[0]) {
+                int k = 1;
+                while (k < prefix.length && source.get(start + k) == prefix[k]) {
+                    k++;
+                }
+                if (k == prefix.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static ByteBuffer ensureRemaining(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+        return grown.put(buffer.flip());
+    }
+
+    public static class Stats {
+        private final LongAdder files = new LongAdder();
+        private final LongAdder changedFiles = new LongAdder();
+        private final LongAdder renamed = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+
+        public long getFiles() {
+            return files.sum();
+        }
+
+        public long getChangedFiles() {
+            return changedFiles.sum();
+        }
+
+        public long getRenamed() {
+            return renamed.sum();
+        }
+
+        public long getBytesRead() {
+            return bytesRead.sum();
+        }
+
+        public long getBytesWritten() {
+            return bytesWritten.sum();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+// Collects the problems found while reading a spreadsheet: a count per problem, plus the first few offending rows
+// of each. Rows are only formatted when kept as a sample, so reporting a problem is just an increment.
+public class SpreadsheetDiagnostics {
+    public static final int DEFAULT_SAMPLES = 5;
+
+    public enum Problem {
+        INVALID_LINE,
+        INVALID_VALIDATED,
+        INVALID_SIDE,
+        INVALID_UNMAPPED_NAME;
+
+        public String getDescription() {
+            return name().toLowerCase(Locale.ROOT).replace('_', ' ');
+        }
+    }
+
+    private final int maxSamples;
+    private final int maxProblems;
+    private final int[] counts = new int[Problem.values().length];
+    private final List<List<Sample>> samples = new ArrayList<>();
+    private int total;
+
+    public SpreadsheetDiagnostics() {
+        this(DEFAULT_SAMPLES, -1);
+    }
+
+    // Reading fails as soon as there are more than maxProblems problems, unless it's negative
+    public SpreadsheetDiagnostics(int maxSamples, int maxProblems) {
+        this.maxSamples = maxSamples;
+        this.maxProblems = maxProblems;
+        for (int i = 0; i < counts.length; i++) {
+            samples.add(new ArrayList<>(Math.min(maxSamples, 16)));
+        }
+    }
+
+    // column is the offending value in the row, or -1 for the whole row
+    public void report(Problem problem, int line, String[] row, int column) {
+        int ordinal = problem.ordinal();
+        counts[ordinal]++;
+        total++;
+
+        List<Sample> kept = samples.get(ordinal);
+        if (kept.size() < maxSamples) {
+            kept.add(new Sample(line, column < 0 ? Arrays.toString(row) : row[column]));
+        }
+        checkThreshold();
+    }
+
+    // Adds the problems collected by another reader, e.g. when replaying a cached parse
+    public void merge(SpreadsheetDiagnostics other) {
+        merge(other, 0);
+    }
+
+    // As merge, for problems a reader numbered from a later line of the same file
+    void merge(SpreadsheetDiagnostics other, int lineOffset) {
+        for (Problem problem : Problem.values()) {
+            List<Sample> shifted = other.getSamples(problem);
+            if (lineOffset != 0) {
+                shifted = new ArrayList<>(shifted.size());
+                for (Sample sample : other.getSamples(problem)) {
+                    shifted.add(new Sample(sample.getLine() + lineOffset, sample.getValue()));
+                }
+            }
+            add(problem, other.getCount(problem), shifted);
+        }
+    }
+
+    // Collects problems for a part of the input that will be merged back into this one, so keeps as many samples but
+    // leaves the threshold to the merge
+    SpreadsheetDiagnostics forPart() {
+        return new SpreadsheetDiagnostics(maxSamples, -1);
+    }
+
+    void add(Problem problem, int count, List<Sample> newSamples) {
+        int ordinal = problem.ordinal();
+        counts[ordinal] += count;
+        total += count;
+
+        List<Sample> kept = samples.get(ordinal);
+        for (int i = 0; i < newSamples.size() && kept.size() < maxSamples; i++) {
+            kept.add(newSamples.get(i));
+        }
+        checkThreshold();
+    }
+
+    private void checkThreshold() {
+        if (maxProblems >= 0 && total > maxProblems) {
+            throw new RuntimeException("Spreadsheet has more than " + maxProblems + " problems\n" + summary());
+        }
+    }
+
+    public boolean isEmpty() {
+        return total == 0;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getCount(Problem problem) {
+        return counts[problem.ordinal()];
+    }
+
+    public List<Sample> getSamples(Problem problem) {
+        return Collections.unmodifiableList(samples.get(problem.ordinal()));
+    }
+
+    public String summary() {
+        StringBuilder summary = new StringBuilder().append(total).append(total == 1 ? " problem" : " problems")
+            .append(" in spreadsheet");
+        for (Problem problem : Problem.values()) {
+            int count = counts[problem.ordinal()];
+            if (count == 0) {
+                continue;
+            }
+            summary.append(String.format(Locale.ROOT, "%n  %-24s %8d", problem.getDescription(), count));
+            for (Sample sample : samples.get(problem.ordinal())) {
+                summary.append(String.format(Locale.ROOT, "%n    #%d: %s", sample.line, sample.value));
+            }
+            if (count > samples.get(problem.ordinal()).size()) {
+                summary.append(String.format(Locale.ROOT, "%n    ..."));
+            }
+        }
+        return summary.toString();
+    }
+
+    public void write(File output) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("{\n  \"total\": " + total + ",\n  \"problems\": {");
+            boolean first = true;
+            for (Problem problem : Problem.values()) {
+                writer.write(first ? "\n" : ",\n");
+                first = false;
+                writer.write("    \"" + problem.name().toLowerCase(Locale.ROOT) + "\": {\"count\": "
+                    + counts[problem.ordinal()] + ", \"samples\": [");
+                List<Sample> kept = samples.get(problem.ordinal());
+                for (int i = 0; i < kept.size(); i++) {
+                    writer.write((i == 0 ? "" : ", ") + "{\"line\": " + kept.get(i).line + ", \"value\": "
+                        + quote(kept.get(i).value) + "}");
+                }
+                writer.write("]}");
+            }
+            writer.write("\n  }\n}\n");
+        }
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    public static class Sample {
+        private final int line;
+        private final String value;
+
+        Sample(int line, String value) {
+            this.line = line;
+            this.value = value;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public String getValue() {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Insertion-ordered map from SRG names to values, hashed on the numeric SRG id instead of the full string.
+// Entries are kept in dense parallel arrays; the open-addressing table only stores indices into them.
+// Names sharing an id (e.g. the params of one method) are told apart by comparing the names themselves.
+public class SrgMap<V> extends AbstractMap<String, V> {
+    private static final int MIN_CAPACITY = 8;
+
+    private int[] ids;
+    private String[] names;
+    private Object[] values;
+    private int[] table; // dense index + 1, or 0 for an empty slot
+    private int size;
+
+    public SrgMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public SrgMap(int expectedSize) {
+        int capacity = Math.max(MIN_CAPACITY, expectedSize);
+        this.ids = new int[capacity];
+        this.names = new String[capacity];
+        this.values = new Object[capacity];
+        this.table = new int[tableSizeFor(capacity)];
+    }
+
+    public V put(int id, String name, V value) {
+        int mask = table.length - 1;
+        int slot = hash(id) & mask;
+        int index;
+        while ((index = table[slot]) != 0) {
+            if (ids[index - 1] == id && names[index - 1].equals(name)) {
+                V previous = valueAt(index - 1);
+                values[index - 1] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (size == ids.length) {
+            growEntries();
+        }
+        ids[size] = id;
+        names[size] = name;
+        values[size] = value;
+        table[slot] = ++size;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+        return null;
+    }
+
+    public V get(int id, String name) {
+        int index = indexOf(id, name);
+        return index < 0 ? null : valueAt(index);
+    }
+
+    public boolean contains(int id, String name) {
+        return indexOf(id, name) >= 0;
+    }
+
+    @Override
+    public V put(String name, V value) {
+        return put(SrgNames.parseId(name), name, value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return key instanceof String ? get(SrgNames.parseId((String) key), (String) key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof String && contains(SrgNames.parseId((String) key), (String) key);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new DenseIterator<V>() {
+                    @Override
+                    V at(int index) {
+                        return valueAt(index);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return new AbstractSet<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                return new DenseIterator<String>() {
+                    @Override
+                    String at(int index) {
+                        return names[index];
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        return new AbstractSet<Map.Entry<String, V>>() {
+            @Override
+            public Iterator<Map.Entry<String, V>> iterator() {
+                return new DenseIterator<Map.Entry<String, V>>() {
+                    @Override
+                    Map.Entry<String, V> at(int index) {
+                        return new SimpleImmutableEntry<>(names[index], valueAt(index));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(int id, String name) {
+        int mask = table.length - 1;
+        int slot = hash(id) & mask;
+        int index;
+        while ((index = table[slot]) != 0) {
+            if (ids[index - 1] == id && names[index - 1].equals(name)) {
+                return index - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    private void growEntries() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        values = Arrays.copyOf(values, capacity);
+    }
+
+    private void rehash(int tableSize) {
+        int[] newTable = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(ids[i]) & mask;
+            while (newTable[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            newTable[slot] = i + 1;
+        }
+        table = newTable;
+    }
+
+    static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    private abstract class DenseIterator<T> implements Iterator<T> {
+        private int next;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            return at(next++);
+        }
+
+        abstract T at(int index);
+    }
+}
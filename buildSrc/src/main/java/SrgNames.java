@@ -0,0 +1,108 @@
+public final class SrgNames {
+    public static final int NO_ID = -1;
+
+    private static final String METHOD_PREFIX = "func_";
+    private static final String FIELD_PREFIX = "field_";
+    private static final String PARAM_PREFIX = "p_";
+
+    private SrgNames() {
+    }
+
+    // Equivalent to matching against func_\d+_\w+_?, field_\d+_\w+_? and p_i?\d+_\d+_?, in that order
+    public static MappingType classify(String name) {
+        if (name.startsWith(METHOD_PREFIX)) {
+            return isMemberSuffix(name, METHOD_PREFIX.length()) ? MappingType.METHOD : null;
+        } else if (name.startsWith(FIELD_PREFIX)) {
+            return isMemberSuffix(name, FIELD_PREFIX.length()) ? MappingType.FIELD : null;
+        } else if (name.startsWith(PARAM_PREFIX)) {
+            return isParamSuffix(name, PARAM_PREFIX.length()) ? MappingType.PARAM : null;
+        }
+        return null;
+    }
+
+    // The numeric id of a method or field, or of the owning method/constructor for a param
+    public static int parseId(String name) {
+        int start;
+        if (name.startsWith(METHOD_PREFIX)) {
+            start = METHOD_PREFIX.length();
+        } else if (name.startsWith(FIELD_PREFIX)) {
+            start = FIELD_PREFIX.length();
+        } else if (name.startsWith(PARAM_PREFIX)) {
+            start = PARAM_PREFIX.length();
+            if (start < name.length() && name.charAt(start) == 'i') {
+                start++;
+            }
+        } else {
+            return NO_ID;
+        }
+
+        int id = 0;
+        int i = start;
+        for (int length = name.length(); i < length; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (id > (Integer.MAX_VALUE - (c - '0')) / 10) {
+                return NO_ID;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return i == start ? NO_ID : id;
+    }
+
+    // \d+_\w+_?
+    private static boolean isMemberSuffix(String name, int start) {
+        int length = name.length();
+        int i = skipDigits(name, start);
+        if (i == start || i >= length || name.charAt(i) != '_') {
+            return false;
+        }
+        if (++i == length) {
+            return false;
+        }
+        for (; i < length; i++) {
+            if (!isWordChar(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // i?\d+_\d+_?
+    private static boolean isParamSuffix(String name, int start) {
+        int length = name.length();
+        if (start < length && name.charAt(start) == 'i') {
+            start++;
+        }
+        int i = skipDigits(name, start);
+        if (i == start || i >= length || name.charAt(i) != '_') {
+            return false;
+        }
+        int index = i + 1;
+        i = skipDigits(name, index);
+        if (i == index) {
+            return false;
+        }
+        if (i < length && name.charAt(i) == '_') {
+            i++;
+        }
+        return i == length;
+    }
+
+    private static int skipDigits(String name, int i) {
+        int length = name.length();
+        while (i < length && isDigit(name.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWordChar(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+}
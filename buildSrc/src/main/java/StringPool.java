@@ -0,0 +1,27 @@
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Canonicalizes equal strings while loading mappings, so the many rows sharing a class name, a javadoc comment or a
+// common mapped name like getX all point at one instance. Unlike String.intern the pool is dropped along with the
+// load. Not thread-safe, unless made with concurrent for readers sharing one pool.
+public class StringPool {
+    private final Map<String, String> strings;
+
+    public StringPool() {
+        this(new HashMap<>());
+    }
+
+    private StringPool(Map<String, String> strings) {
+        this.strings = strings;
+    }
+
+    public static StringPool concurrent() {
+        return new StringPool(new ConcurrentHashMap<>());
+    }
+
+    public String intern(String value) {
+        String existing = strings.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+}
@@ -0,0 +1,116 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Checks combined mappings, as written by CombineMappings, for problems across rows (see MappingValidator)
+@CacheableTask
+public class ValidateMappings extends DefaultTask {
+    private File mappings;
+    private String placeholderClassName;
+    private int maxProblems = -1;
+    private boolean parallel = true;
+    private File output;
+
+    // A spreadsheet CSV, or binary mappings
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getMappings() {
+        return mappings;
+    }
+
+    public void setMappings(File mappings) {
+        this.mappings = mappings;
+    }
+
+    // Class name the rows taken from the base export were given
+    @Input
+    @Optional
+    public String getPlaceholderClassName() {
+        return placeholderClassName;
+    }
+
+    public void setPlaceholderClassName(String placeholderClassName) {
+        this.placeholderClassName = placeholderClassName;
+    }
+
+    // Fails the task when there are more than this many errors, unless it's negative. Warnings, like methods sharing a
+    // name, don't count (see MappingValidator.Check)
+    @Input
+    public int getMaxProblems() {
+        return maxProblems;
+    }
+
+    public void setMaxProblems(int maxProblems) {
+        this.maxProblems = maxProblems;
+    }
+
+    @Internal
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    // JSON report of the problems found
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    @TaskAction
+    public void act() throws IOException {
+        if (output.exists() && !output.delete()) {
+            getLogger().error("Unable to delete existing output at " + output);
+        }
+        if (output.getParentFile() != null && !output.getParentFile().exists() && !output.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + output);
+        }
+
+        final MappingSpreadsheet combined = BinaryMappings.isBinary(mappings) ? BinaryMappings.readSpreadsheet(mappings)
+            : MappingSpreadsheet.read(mappings);
+
+        final long start = System.nanoTime();
+        final MappingValidator.Report report;
+        if (parallel) {
+            ExecutorService executor = Executors.newFixedThreadPool(MappingValidator.Check.values().length);
+            try {
+                report = MappingValidator.validate(combined, placeholderClassName,
+                    SpreadsheetDiagnostics.DEFAULT_SAMPLES, executor);
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            report = MappingValidator.validate(combined, placeholderClassName, SpreadsheetDiagnostics.DEFAULT_SAMPLES,
+                Runnable::run);
+        }
+        final long millis = (System.nanoTime() - start) / 1_000_000;
+        report.write(output);
+
+        if (!report.isEmpty()) {
+            getLogger().warn(report.summary());
+        }
+        getLogger().lifecycle("Validated " + combined.getMethods().size() + " methods, " + combined.getFields().size()
+            + " fields and " + combined.getParams().size() + " params in " + millis + " ms");
+        if (maxProblems >= 0 && report.getErrors() > maxProblems) {
+            throw new RuntimeException("Combined mappings have more than " + maxProblems + " errors");
+        }
+    }
+}
@@ -0,0 +1,345 @@
+import org.gradle.api.DefaultTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Keeps a combined export up to date with the spreadsheet until the build is stopped. The spreadsheet is polled,
+// either from spreadsheetUrl or as a local file, and only the rows that changed since the last poll are merged into
+// the resident export; only the CSVs holding those rows are encoded again.
+public class WatchExport extends DefaultTask {
+    private static final MappingType[] KINDS = { MappingType.METHOD, MappingType.FIELD, MappingType.PARAM };
+
+    private File spreadsheet;
+    private String spreadsheetUrl;
+    private File baseExportZip;
+    private boolean allowUnvalidated;
+    private int maxSpreadsheetProblems = -1;
+    private long pollInterval = 2000;
+    private boolean storeUncompressed;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    private File downloadCache;
+    private long downloadCacheSize = Long.MAX_VALUE;
+    private File output;
+
+    // The resident model: the export's entries by name, in the order its CSVs are written in
+    private final TreeMap<String, MappingExport.MemberEntry> methods = new TreeMap<>();
+    private final TreeMap<String, MappingExport.MemberEntry> fields = new TreeMap<>();
+    private final TreeMap<String, MappingExport.ParamEntry> params = new TreeMap<>();
+    private final Map<MappingType, CsvBuffer> encoded = new EnumMap<>(MappingType.class);
+    private MappingExport baseExport;
+    private MappingSpreadsheet current;
+
+    public WatchExport() {
+        getOutputs().upToDateWhen(task -> false);
+    }
+
+    // Read directly when there's no spreadsheetUrl, or where each download of it is stored otherwise
+    @Internal
+    public File getSpreadsheet() {
+        return spreadsheet;
+    }
+
+    public void setSpreadsheet(File spreadsheet) {
+        this.spreadsheet = spreadsheet;
+    }
+
+    @Input
+    @Optional
+    public String getSpreadsheetUrl() {
+        return spreadsheetUrl;
+    }
+
+    public void setSpreadsheetUrl(String spreadsheetUrl) {
+        this.spreadsheetUrl = spreadsheetUrl;
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public File getBaseExportZip() {
+        return baseExportZip;
+    }
+
+    public void setBaseExportZip(File baseExportZip) {
+        this.baseExportZip = baseExportZip;
+    }
+
+    @Input
+    public boolean isAllowUnvalidated() {
+        return allowUnvalidated;
+    }
+
+    public void setAllowUnvalidated(boolean allowUnvalidated) {
+        this.allowUnvalidated = allowUnvalidated;
+    }
+
+    // A poll finding more than this many problems in the spreadsheet is skipped, unless it's negative
+    @Input
+    public int getMaxSpreadsheetProblems() {
+        return maxSpreadsheetProblems;
+    }
+
+    public void setMaxSpreadsheetProblems(int maxSpreadsheetProblems) {
+        this.maxSpreadsheetProblems = maxSpreadsheetProblems;
+    }
+
+    // In milliseconds
+    @Internal
+    public long getPollInterval() {
+        return pollInterval;
+    }
+
+    public void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    @Input
+    public boolean isStoreUncompressed() {
+        return storeUncompressed;
+    }
+
+    public void setStoreUncompressed(boolean storeUncompressed) {
+        this.storeUncompressed = storeUncompressed;
+    }
+
+    // Deflater level 0-9, or -1 for the default; ignored when storing uncompressed
+    @Input
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    // Where the spreadsheet is downloaded through, and the base export parsed through (see DownloadCache)
+    @Internal
+    public File getDownloadCache() {
+        return downloadCache;
+    }
+
+    public void setDownloadCache(File downloadCache) {
+        this.downloadCache = downloadCache;
+    }
+
+    @Internal
+    public long getDownloadCacheSize() {
+        return downloadCacheSize;
+    }
+
+    public void setDownloadCacheSize(long downloadCacheSize) {
+        this.downloadCacheSize = downloadCacheSize;
+    }
+
+    @OutputFile
+    public File getOutput() {
+        return output;
+    }
+
+    public void setOutput(File output) {
+        this.output = output;
+    }
+
+    @TaskAction
+    public void act() throws IOException, InterruptedException {
+        if (output.getParentFile() != null && !output.getParentFile().exists() && !output.getParentFile().mkdirs()) {
+            getLogger().error("Unable to create parent directories for " + output);
+        }
+        final DownloadCache cache = new DownloadCache(downloadCache != null ? downloadCache
+            : new File(getTemporaryDir(), "downloadCache"), downloadCacheSize);
+
+        long start = System.nanoTime();
+        baseExport = cache.readExport(baseExportZip, Runnable::run);
+        String hash = fetch(cache);
+        // Taken before reading, so a change saved while the spreadsheet is read is picked up by the first poll
+        long lastModified = spreadsheet.lastModified();
+        long length = spreadsheet.length();
+        current = readSpreadsheet();
+        if (current == null) {
+            throw new RuntimeException("Spreadsheet has more than " + maxSpreadsheetProblems + " problems");
+        }
+        MappingExport export = GenerateMappingExport.toExport(CombineMappings.combine(current, baseExport, null,
+            allowUnvalidated));
+        methods.putAll(export.getMethods());
+        fields.putAll(export.getFields());
+        params.putAll(export.getParams());
+        write(EnumSet.allOf(MappingType.class));
+        getLogger().lifecycle("Generated " + output.getName() + " in " + (System.nanoTime() - start) / 1_000_000
+            + " ms, watching " + (spreadsheetUrl != null ? spreadsheetUrl : spreadsheet.getPath())
+            + " for changes");
+
+        while (!Thread.currentThread().isInterrupted()) {
+            Thread.sleep(pollInterval);
+            try {
+                if (spreadsheetUrl != null) {
+                    String newHash = fetch(cache);
+                    if (newHash.equals(hash)) {
+                        continue;
+                    }
+                    hash = newHash;
+                } else if (spreadsheet.lastModified() == lastModified && spreadsheet.length() == length) {
+                    continue;
+                }
+                lastModified = spreadsheet.lastModified();
+                length = spreadsheet.length();
+                update();
+            } catch (IOException | RuntimeException e) {
+                getLogger().error("Unable to update " + output.getName() + ", keeping the previous export", e);
+            }
+        }
+    }
+
+    // Downloads the spreadsheet if it's polled from a URL, returning the hash of its content
+    private String fetch(DownloadCache cache) throws IOException {
+        return spreadsheetUrl != null ? cache.fetch(URI.create(spreadsheetUrl), spreadsheet).getHash() : "";
+    }
+
+    // Null if there are too many problems to use this version of the spreadsheet
+    private MappingSpreadsheet readSpreadsheet() {
+        SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics(SpreadsheetDiagnostics.DEFAULT_SAMPLES, -1);
+        MappingSpreadsheet mappings = MappingSpreadsheet.read(spreadsheet, diagnostics);
+        if (!diagnostics.isEmpty()) {
+            getLogger().warn(diagnostics.summary());
+        }
+        return maxSpreadsheetProblems < 0 || diagnostics.getTotal() <= maxSpreadsheetProblems ? mappings : null;
+    }
+
+    private void update() throws IOException {
+        long start = System.nanoTime();
+        MappingSpreadsheet updated = readSpreadsheet();
+        if (updated == null) {
+            getLogger().error("Spreadsheet has more than " + maxSpreadsheetProblems
+                + " problems, keeping the previous export");
+            return;
+        }
+
+        Set<MappingType> changedKinds = EnumSet.noneOf(MappingType.class);
+        int changedRows = 0;
+        for (MappingType kind : KINDS) {
+            Map<String, MappingSpreadsheet.Entry> oldEntries = entries(current, kind);
+            Map<String, MappingSpreadsheet.Entry> newEntries = entries(updated, kind);
+            for (MappingSpreadsheet.Entry entry : newEntries.values()) {
+                MappingSpreadsheet.Entry old = oldEntries.get(entry.getUnmappedName());
+                if (old == null || !sameRow(old, entry)) {
+                    changedRows++;
+                    if (apply(kind, entry.getUnmappedName(), entry)) {
+                        changedKinds.add(kind);
+                    }
+                }
+            }
+            for (MappingSpreadsheet.Entry old : oldEntries.values()) {
+                if (!newEntries.containsKey(old.getUnmappedName())) {
+                    changedRows++;
+                    if (apply(kind, old.getUnmappedName(), null)) {
+                        changedKinds.add(kind);
+                    }
+                }
+            }
+        }
+        current = updated;
+
+        if (changedKinds.isEmpty()) {
+            getLogger().lifecycle(changedRows == 0 ? "Spreadsheet changed, but none of its rows did"
+                : changedRows + " rows changed, none of them affecting the export");
+            return;
+        }
+        write(changedKinds);
+        getLogger().lifecycle("Updated " + changedRows + " rows of " + output.getName() + " in "
+            + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    // Recomputes the export entry for one name the same way as CombineMappings followed by
+    // GenerateMappingExport, returning whether it changed
+    private boolean apply(MappingType kind, String name, MappingSpreadsheet.Entry entry) {
+        boolean fromSpreadsheet = entry != null && (entry.isValidated() || allowUnvalidated);
+        switch (kind) {
+            case METHOD:
+                return replace(methods, name, fromSpreadsheet ? GenerateMappingExport.toMemberEntry(entry)
+                    : baseExport.getMethod(name));
+            case FIELD:
+                return replace(fields, name, fromSpreadsheet ? GenerateMappingExport.toMemberEntry(entry)
+                    : baseExport.getField(name));
+            default:
+                return replace(params, name, fromSpreadsheet ? GenerateMappingExport.toParamEntry(entry)
+                    : baseExport.getParam(name));
+        }
+    }
+
+    private static <E extends MappingExport.Entry> boolean replace(Map<String, E> entries, String name, E entry) {
+        E previous = entry != null ? entries.put(name, entry) : entries.remove(name);
+        return !sameEntry(previous, entry);
+    }
+
+    // Encodes the CSVs of the given kinds again, reusing the others, and replaces the export with the result
+    private void write(Set<MappingType> changedKinds) throws IOException {
+        if (changedKinds.contains(MappingType.METHOD)) {
+            encoded.put(MappingType.METHOD, MappingExport.encodeMembers(MappingExport.METHODS_CSV_HEADER,
+                methods.values()));
+        }
+        if (changedKinds.contains(MappingType.FIELD)) {
+            encoded.put(MappingType.FIELD, MappingExport.encodeMembers(MappingExport.FIELDS_CSV_HEADER,
+                fields.values()));
+        }
+        if (changedKinds.contains(MappingType.PARAM)) {
+            encoded.put(MappingType.PARAM, MappingExport.encodeParams(MappingExport.PARAMS_CSV_HEADER,
+                params.values()));
+        }
+
+        // Written next to the output and moved over it, so readers never see a partial zip
+        File temp = File.createTempFile(output.getName(), ".tmp", output.getAbsoluteFile().getParentFile());
+        try {
+            int compressionMethod = storeUncompressed ? ZipEntry.STORED : ZipEntry.DEFLATED;
+            try (ZipOutputStream zip = MappingExport.openZip(temp, compressionLevel)) {
+                MappingExport.writeEntry(zip, MappingExport.METHODS_CSV, encoded.get(MappingType.METHOD),
+                    compressionMethod);
+                MappingExport.writeEntry(zip, MappingExport.FIELDS_CSV, encoded.get(MappingType.FIELD),
+                    compressionMethod);
+                MappingExport.writeEntry(zip, MappingExport.PARAMS_CSV, encoded.get(MappingType.PARAM),
+                    compressionMethod);
+            }
+            Files.move(temp.toPath(), output.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    private static Map<String, MappingSpreadsheet.Entry> entries(MappingSpreadsheet mappings, MappingType kind) {
+        return kind == MappingType.METHOD ? mappings.getMethods()
+            : kind == MappingType.FIELD ? mappings.getFields() : mappings.getParams();
+    }
+
+    private static boolean sameRow(MappingSpreadsheet.Entry a, MappingSpreadsheet.Entry b) {
+        return a.isValidated() == b.isValidated() && a.getSide() == b.getSide()
+            && a.getClassName().equals(b.getClassName()) && a.getMappedName().equals(b.getMappedName())
+            && a.getJavadocComment().equals(b.getJavadocComment());
+    }
+
+    private static boolean sameEntry(MappingExport.Entry a, MappingExport.Entry b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getSide() == b.getSide() && a.getMappedName().equals(b.getMappedName())
+            && (!(a instanceof MappingExport.MemberEntry) || Objects.equals(((MappingExport.MemberEntry) a)
+            .getJavadoc(), ((MappingExport.MemberEntry) b).getJavadoc()));
+    }
+}
@@ -0,0 +1,102 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// Mappings written to the binary format and read back, against the CSVs they were written from
+class BinaryMappingsTest {
+    // Names the binary format splits into prefix, id and suffix, and ones it has to keep whole
+    private static final String[] METHODS = { "func_70170_p", "func_007_a", "func_0_b", "func_2147483647_z",
+        "func_99999999999_a", "func_12_ab_", "func_1_a__" };
+    private static final String[] FIELDS = { "field_110179_h_", "field_00_c", "field_5_\u00e9" };
+    private static final String[] PARAMS = { "p_70170_2_", "p_i45545_1_", "p_i007_1_", "p_0_0_", "p_00_1_",
+        "p_2147483647_3_" };
+    private static final String[] JAVADOCS = { "", " ", "Gets the width", "Line one\nline two", "Says \"hi\"",
+        "Back\\slash", "\u00e9t\u00e9 \u2014 \u0394 \ud83d\ude00" };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void spreadsheetRoundTripsToTheSameCsv() throws IOException {
+        MappingSpreadsheet sheet = new MappingSpreadsheet();
+        int row = 0;
+        for (String method : METHODS) {
+            sheet.addMethod(method, new MappingSpreadsheet.Entry(row % 2 == 0, "net/minecraft/Foo", method,
+                "method" + row, Side.from(row % 3), JAVADOCS[row % JAVADOCS.length]));
+            row++;
+        }
+        for (String field : FIELDS) {
+            sheet.addField(field, new MappingSpreadsheet.Entry(row % 2 == 0, "net/minecraft/\u00c9t\u00e9", field,
+                "field\u00e9" + row, Side.from(row % 3), JAVADOCS[row % JAVADOCS.length]));
+            row++;
+        }
+        for (String param : PARAMS) {
+            sheet.addParam(param, new MappingSpreadsheet.Entry(row % 2 == 0, "", param, row % 4 == 0 ? "" : "p" + row,
+                Side.from(row % 3), ""));
+            row++;
+        }
+        File csv = dir.resolve("sheet.csv").toFile();
+        sheet.write(csv);
+        File binary = dir.resolve("sheet" + BinaryMappings.EXTENSION).toFile();
+        BinaryMappings.write(binary, sheet);
+        File roundTripped = dir.resolve("round-tripped.csv").toFile();
+        BinaryMappings.readSpreadsheet(binary).write(roundTripped);
+
+        assertArrayEquals(Files.readAllBytes(csv.toPath()), Files.readAllBytes(roundTripped.toPath()));
+        // And row by row, as the CSV is written in the platform charset
+        MappingSpreadsheet read = BinaryMappings.readSpreadsheet(binary);
+        for (MappingSpreadsheet.Entry entry : sheet.getMethods().values()) {
+            assertArrayEquals(entry.toCSVLine(), read.getMethod(entry.getUnmappedName()).toCSVLine());
+        }
+        for (MappingSpreadsheet.Entry entry : sheet.getFields().values()) {
+            assertArrayEquals(entry.toCSVLine(), read.getField(entry.getUnmappedName()).toCSVLine());
+        }
+        for (MappingSpreadsheet.Entry entry : sheet.getParams().values()) {
+            assertArrayEquals(entry.toCSVLine(), read.getParam(entry.getUnmappedName()).toCSVLine());
+        }
+    }
+
+    @Test
+    void exportRoundTripsToTheSameCsvs() throws IOException {
+        MappingExport export = new MappingExport();
+        int row = 0;
+        for (String method : METHODS) {
+            export.addMethod(method, new MappingExport.MemberEntry(method, "method\u00e9" + row, Side.from(row % 3),
+                JAVADOCS[row % JAVADOCS.length]));
+            row++;
+        }
+        for (String field : FIELDS) {
+            export.addField(field, new MappingExport.MemberEntry(field, "field" + row, Side.from(row % 3),
+                JAVADOCS[row % JAVADOCS.length]));
+            row++;
+        }
+        for (String param : PARAMS) {
+            export.addParam(param, new MappingExport.ParamEntry(param, "p" + row, Side.from(row % 3)));
+            row++;
+        }
+        File zip = dir.resolve("export.zip").toFile();
+        export.write(zip);
+        File binary = dir.resolve("export" + BinaryMappings.EXTENSION).toFile();
+        BinaryMappings.write(binary, export);
+        File roundTripped = dir.resolve("round-tripped.zip").toFile();
+        BinaryMappings.readExport(binary).write(roundTripped);
+
+        // The CSVs rather than the zips, whose entries are stamped with the time they were written
+        try (FileSystem expected = FileSystems.newFileSystem(zip.toPath());
+             FileSystem actual = FileSystems.newFileSystem(roundTripped.toPath())) {
+            for (String csv : new String[] { MappingExport.METHODS_CSV, MappingExport.FIELDS_CSV,
+                MappingExport.PARAMS_CSV }) {
+                assertArrayEquals(Files.readAllBytes(expected.getPath(csv)), Files.readAllBytes(actual.getPath(csv)),
+                    csv);
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// DownloadCache against a local HTTP stub serving resources with an ETag, a Last-Modified date or neither
+class DownloadCacheTest {
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+    private final List<Headers> requests = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        synchronized (requests) {
+            requests.add(exchange.getRequestHeaders());
+        }
+        Resource resource = resources.get(exchange.getRequestURI().getPath());
+        if (resource == null) {
+            exchange.sendResponseHeaders(404, -1);
+        } else if (resource.redirect != null) {
+            exchange.getResponseHeaders().add("Location", resource.redirect);
+            exchange.sendResponseHeaders(302, -1);
+        } else if (resource.isNotModified(exchange.getRequestHeaders())) {
+            exchange.sendResponseHeaders(304, -1);
+        } else {
+            if (resource.etag != null) {
+                exchange.getResponseHeaders().add("ETag", resource.etag);
+            }
+            if (resource.lastModified != null) {
+                exchange.getResponseHeaders().add("Last-Modified", resource.lastModified);
+            }
+            exchange.sendResponseHeaders(200, resource.body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(resource.body);
+            }
+        }
+        exchange.close();
+    }
+
+    @Test
+    void unchangedResourceIsNotTransferredAgain() throws IOException {
+        resources.put("/sheet.csv", new Resource("a,b,c\n", "\"v1\"", null));
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), Long.MAX_VALUE);
+        File dest = dir.resolve("sheet.csv").toFile();
+
+        DownloadCache.Result first = cache.fetch(uri("/sheet.csv"), dest);
+        assertTrue(first.isTransferred());
+        assertEquals(6, first.getBytesTransferred());
+        assertNull(requests.get(0).getFirst("If-None-Match"));
+
+        assertTrue(dest.delete());
+        DownloadCache.Result second = cache.fetch(uri("/sheet.csv"), dest);
+        assertFalse(second.isTransferred());
+        assertEquals(0, second.getBytesTransferred());
+        assertEquals(first.getHash(), second.getHash());
+        assertEquals("\"v1\"", requests.get(1).getFirst("If-None-Match"));
+        assertEquals("a,b,c\n", read(dest));
+    }
+
+    @Test
+    void lastModifiedIsSentBack() throws IOException {
+        String date = "Wed, 28 Oct 2020 12:00:00 GMT";
+        resources.put("/export.zip", new Resource("zip", null, date));
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), Long.MAX_VALUE);
+        File dest = dir.resolve("export.zip").toFile();
+
+        cache.fetch(uri("/export.zip"), dest);
+        assertFalse(cache.fetch(uri("/export.zip"), dest).isTransferred());
+        assertEquals(date, requests.get(1).getFirst("If-Modified-Since"));
+        assertNull(requests.get(1).getFirst("If-None-Match"));
+    }
+
+    @Test
+    void changedResourceIsTransferred() throws IOException {
+        resources.put("/sheet.csv", new Resource("old\n", "\"v1\"", null));
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), Long.MAX_VALUE);
+        File dest = dir.resolve("sheet.csv").toFile();
+        DownloadCache.Result first = cache.fetch(uri("/sheet.csv"), dest);
+
+        resources.put("/sheet.csv", new Resource("new\n", "\"v2\"", null));
+        DownloadCache.Result second = cache.fetch(uri("/sheet.csv"), dest);
+        assertTrue(second.isTransferred());
+        assertNotEquals(first.getHash(), second.getHash());
+        assertEquals("new\n", read(dest));
+    }
+
+    @Test
+    void withoutValidatorsTheContentIsDeduplicated() throws IOException {
+        resources.put("/a", new Resource("same", null, null));
+        resources.put("/b", new Resource("same", null, null));
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), Long.MAX_VALUE);
+
+        DownloadCache.Result a = cache.fetch(uri("/a"), dir.resolve("a").toFile());
+        DownloadCache.Result b = cache.fetch(uri("/b"), dir.resolve("b").toFile());
+        assertTrue(b.isTransferred());
+        assertEquals(a.getHash(), b.getHash());
+        assertEquals(1, list(dir.resolve("cache/blobs")).size());
+    }
+
+    @Test
+    void redirectsAreFollowed() throws IOException {
+        resources.put("/old", new Resource(null, null, null, "/new"));
+        resources.put("/new", new Resource("moved", "\"v1\"", null));
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), Long.MAX_VALUE);
+        File dest = dir.resolve("moved").toFile();
+
+        assertTrue(cache.fetch(uri("/old"), dest).isTransferred());
+        assertEquals("moved", read(dest));
+        assertFalse(cache.fetch(uri("/old"), dest).isTransferred());
+    }
+
+    @Test
+    void errorsAreReported() {
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), Long.MAX_VALUE);
+        IOException e = assertThrows(IOException.class, () -> cache.fetch(uri("/missing"), dir.resolve("x")
+            .toFile()));
+        assertTrue(e.getMessage().contains("404"), e.getMessage());
+    }
+
+    @Test
+    void leastRecentlyUsedBlobsAreEvicted() throws IOException {
+        for (String name : new String[] { "/a", "/b", "/c" }) {
+            resources.put(name, new Resource(name.substring(1).repeat(100), null, null));
+        }
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), 250);
+        DownloadCache.Result a = cache.fetch(uri("/a"), dir.resolve("a").toFile());
+        setLastModified(a.getHash(), 1_000);
+        DownloadCache.Result b = cache.fetch(uri("/b"), dir.resolve("b").toFile());
+        setLastModified(b.getHash(), 2_000);
+        DownloadCache.Result c = cache.fetch(uri("/c"), dir.resolve("c").toFile());
+
+        List<String> blobs = list(dir.resolve("cache/blobs"));
+        assertEquals(List.of(b.getHash(), c.getHash()).stream().sorted().collect(Collectors.toList()), blobs);
+
+        // The evicted blob is transferred again even though its ETag-less source is still recorded
+        assertTrue(cache.fetch(uri("/a"), dir.resolve("a").toFile()).isTransferred());
+    }
+
+    @Test
+    void parsedSpreadsheetIsReadFromItsSnapshot() throws IOException {
+        File sheet = dir.resolve("sheet.csv").toFile();
+        Files.write(sheet.toPath(), ("validated,class,searge,name,side,desc\n"
+            + "TRUE,net/minecraft/Foo,func_300_c,getWidth,0,Gets it\n"
+            + "maybe,net/minecraft/Foo,field_400_d,width,2,\n").getBytes(StandardCharsets.UTF_8));
+        DownloadCache cache = new DownloadCache(dir.resolve("cache").toFile(), Long.MAX_VALUE);
+
+        SpreadsheetDiagnostics parsed = new SpreadsheetDiagnostics();
+        MappingSpreadsheet first = cache.readSpreadsheet(sheet, parsed);
+        assertEquals(1, list(dir.resolve("cache/snapshots")).size());
+
+        SpreadsheetDiagnostics replayed = new SpreadsheetDiagnostics();
+        MappingSpreadsheet second = cache.readSpreadsheet(sheet, replayed);
+        assertEquals("getWidth", second.getMethods().get("func_300_c").getMappedName());
+        assertEquals(first.getFields().keySet(), second.getFields().keySet());
+        assertEquals(parsed.summary(), replayed.summary());
+        assertFalse(replayed.isEmpty());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+            + path);
+    }
+
+    private void setLastModified(String hash, long millis) throws IOException {
+        Files.setLastModifiedTime(dir.resolve("cache/blobs").resolve(hash),
+            FileTime.fromMillis(millis));
+    }
+
+    private static List<String> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString()).filter(name -> !name.endsWith(".tmp")).sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static class Resource {
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private final String redirect;
+
+        Resource(String body, String etag, String lastModified) {
+            this(body, etag, lastModified, null);
+        }
+
+        Resource(String body, String etag, String lastModified, String redirect) {
+            this.body = body != null ? body.getBytes(StandardCharsets.UTF_8) : null;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.redirect = redirect;
+        }
+
+        boolean isNotModified(Headers request) {
+            if (etag != null && request.getFirst("If-None-Match") != null) {
+                return etag.equals(request.getFirst("If-None-Match"));
+            }
+            return lastModified != null && lastModified.equals(request.getFirst("If-Modified-Since"));
+        }
+    }
+}
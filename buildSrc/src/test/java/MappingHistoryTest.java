@@ -0,0 +1,214 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// MappingHistory opened from its index against the same history replayed from the log alone
+class MappingHistoryTest {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2020, 10, 28);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deltasMustBeOfTheLastDay() throws IOException {
+        MappingExport first = generateExport(new Random(1), 50);
+        MappingExport second = rename(first, "func_1_a", "first");
+        MappingExport third = rename(second, "func_1_a", "second");
+        MappingHistory history = MappingHistory.open(dir.resolve("h.history").toFile());
+
+        assertThrows(IllegalArgumentException.class, () -> history.ingest(MappingDelta.between(first, second),
+            FIRST_DAY));
+        history.ingest(MappingDelta.between(new MappingExport(), first), FIRST_DAY);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> history.ingest(MappingDelta.between(second, third), FIRST_DAY.plusDays(1)));
+        assertTrue(e.getMessage().contains(FIRST_DAY.toString()), e.getMessage());
+
+        history.ingest(MappingDelta.between(first, second), FIRST_DAY.plusDays(1));
+        history.ingest(third, FIRST_DAY.plusDays(2));
+        MappingHistory reopened = MappingHistory.open(history.getFile());
+        reopened.ingest(MappingDelta.between(third, first), FIRST_DAY.plusDays(3));
+        assertEquals(4, MappingHistory.open(history.getFile()).getDates().size());
+    }
+
+    @Test
+    void indexMatchesTheLog() throws IOException {
+        Random random = new Random(0x4157);
+        File file = dir.resolve("h.history").toFile();
+        List<MappingExport> exports = new ArrayList<>();
+        MappingExport export = generateExport(random, 3_000);
+        MappingHistory history = MappingHistory.open(file);
+        for (int day = 0; day < 20; day++) {
+            if (day > 0) {
+                export = mutate(random, export);
+            }
+            exports.add(export);
+            if (day % 2 == 0) {
+                history.ingest(export, FIRST_DAY.plusDays(day));
+            } else {
+                // Through the file, as IngestHistory adds a delta
+                File delta = dir.resolve("delta" + day + ".zip").toFile();
+                MappingDelta.between(exports.get(day - 1), export).write(delta);
+                history = MappingHistory.open(file);
+                history.ingest(MappingDelta.read(delta), FIRST_DAY.plusDays(day));
+            }
+        }
+        File index = new File(file.getPath() + ".index");
+        assertTrue(index.exists());
+
+        MappingHistory indexed = MappingHistory.open(file);
+        Files.move(index.toPath(), dir.resolve("moved.index"));
+        MappingHistory replayed = MappingHistory.open(file);
+        Files.move(dir.resolve("moved.index"), index.toPath());
+        assertEquals(replayed.getDates(), indexed.getDates());
+
+        for (String name : exports.get(0).getMethods().keySet()) {
+            assertTimelinesEqual(replayed.getTimeline(name), indexed.getTimeline(name));
+        }
+        for (String name : export.getParams().keySet()) {
+            assertTimelinesEqual(replayed.getTimeline(name), indexed.getTimeline(name));
+        }
+        assertNull(indexed.getTimeline("func_99999_z"));
+        for (int day = 0; day < exports.size(); day++) {
+            assertSame(exports.get(day), indexed.reconstruct(FIRST_DAY.plusDays(day)));
+        }
+    }
+
+    @Test
+    void sheetThenDeltaOfTheZips() throws IOException {
+        MappingSpreadsheet sheet = new MappingSpreadsheet();
+        for (int id = 1; id <= 40; id++) {
+            // Every fifth row is still unnamed, and so left out of the zip written from the sheet
+            String mapped = id % 5 == 0 ? "" : "method" + id;
+            sheet.addMethod("func_" + id + "_a", new MappingSpreadsheet.Entry(false, "Foo", "func_" + id + "_a",
+                mapped, Side.BOTH, id % 3 == 0 ? "Does " + id : ""));
+            sheet.addParam("p_" + id + "_1_", new MappingSpreadsheet.Entry(false, "Foo", "p_" + id + "_1_",
+                id % 7 == 0 ? " " : "param" + id, Side.CLIENT, ""));
+        }
+        File sheetFile = dir.resolve("sheet.csv").toFile();
+        sheet.write(sheetFile);
+        File firstZip = dir.resolve("first.zip").toFile();
+        GenerateMappingExport.toExport(sheet).write(firstZip);
+        MappingExport second = rename(MappingExport.read(firstZip), "func_1_a", "renamed");
+        File secondZip = dir.resolve("second.zip").toFile();
+        second.write(secondZip);
+
+        MappingHistory history = MappingHistory.open(dir.resolve("h.history").toFile());
+        history.ingest(CompareCSVs.load(sheetFile), FIRST_DAY);
+        history.ingest(MappingDelta.between(MappingExport.read(firstZip), MappingExport.read(secondZip)),
+            FIRST_DAY.plusDays(1));
+
+        MappingExport first = MappingExport.read(firstZip);
+        MappingExport firstDay = history.reconstruct(FIRST_DAY);
+        assertEquals(first.getMethods().size(), firstDay.getMethods().size());
+        assertEquals(first.getParams().size(), firstDay.getParams().size());
+        assertEquals(first.digest(), firstDay.digest());
+        MappingExport secondDay = MappingHistory.open(history.getFile()).reconstruct(FIRST_DAY.plusDays(1));
+        assertEquals(second.getMethods().size(), secondDay.getMethods().size());
+        assertEquals(second.digest(), secondDay.digest());
+        assertSame(second, secondDay);
+    }
+
+    private static void assertTimelinesEqual(MappingHistory.Timeline expected, MappingHistory.Timeline actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.size(), actual.size(), expected.getName());
+        for (int version = 0; version < expected.size(); version++) {
+            assertEquals(expected.getDate(version), actual.getDate(version));
+            MappingExport.Entry expectedEntry = expected.getEntry(version);
+            MappingExport.Entry actualEntry = actual.getEntry(version);
+            if (expectedEntry == null) {
+                assertNull(actualEntry);
+            } else {
+                assertEquals(MappingExport.digest(expected.getType(), expectedEntry),
+                    MappingExport.digest(actual.getType(), actualEntry), expected.getName());
+            }
+        }
+    }
+
+    private static void assertSame(MappingExport expected, MappingExport actual) {
+        List<String> differences = new ArrayList<>();
+        CompareCSVs.compare(expected, actual, (type, change, oldEntry, newEntry) -> differences.add(change + " "
+            + (oldEntry != null ? oldEntry : newEntry).getUnmappedName()));
+        assertEquals(List.of(), differences);
+    }
+
+    private static MappingExport generateExport(Random random, int methods) {
+        MappingExport export = new MappingExport();
+        for (int id = 1; id <= methods; id++) {
+            String method = "func_" + id + "_a";
+            export.addMethod(method, new MappingExport.MemberEntry(method, "method" + id,
+                Side.from(random.nextInt(3)), id % 4 == 0 ? "Does " + id : ""));
+            String param = "p_" + id + "_1_";
+            export.addParam(param, new MappingExport.ParamEntry(param, "param" + id, Side.BOTH));
+        }
+        return export;
+    }
+
+    private static MappingExport rename(MappingExport base, String method, String name) {
+        MappingExport renamed = copy(base);
+        MappingExport.MemberEntry entry = base.getMethod(method);
+        renamed.addMethod(method, new MappingExport.MemberEntry(method, name, entry.getSide(), entry.getJavadoc()));
+        return renamed;
+    }
+
+    // Renames, moves, adds and removes a few hundred rows
+    private static MappingExport mutate(Random random, MappingExport base) {
+        MappingExport next = new MappingExport();
+        List<String> methods = new ArrayList<>(base.getMethods().keySet());
+        Set<String> removed = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            String method = methods.get(random.nextInt(methods.size()));
+            MappingExport.MemberEntry entry = base.getMethod(method);
+            switch (random.nextInt(4)) {
+                case 0:
+                    next.addMethod(method, new MappingExport.MemberEntry(method, entry.getMappedName() + i,
+                        entry.getSide(), entry.getJavadoc()));
+                    break;
+                case 1:
+                    next.addMethod(method, new MappingExport.MemberEntry(method, entry.getMappedName(),
+                        Side.from((entry.getSide().toNumber() + 1) % 3), entry.getJavadoc() + "!"));
+                    break;
+                case 2:
+                    String param = "p_" + (100_000 + random.nextInt(1_000)) + "_2_";
+                    next.addParam(param, new MappingExport.ParamEntry(param, "added" + i, Side.CLIENT));
+                    break;
+                default:
+                    removed.add(method);
+                    break;
+            }
+        }
+        MappingExport result = new MappingExport();
+        for (MappingExport.MemberEntry method : base.getMethods().values()) {
+            MappingExport.MemberEntry changed = next.getMethod(method.getUnmappedName());
+            if (!removed.contains(method.getUnmappedName())) {
+                result.addMethod(method.getUnmappedName(), changed != null ? changed : method);
+            }
+        }
+        base.getParams().forEach(result::addParam);
+        next.getParams().forEach(result::addParam);
+        return result;
+    }
+
+    private static MappingExport copy(MappingExport base) {
+        MappingExport copy = new MappingExport();
+        base.getMethods().forEach(copy::addMethod);
+        base.getFields().forEach(copy::addField);
+        base.getParams().forEach(copy::addParam);
+        return copy;
+    }
+}
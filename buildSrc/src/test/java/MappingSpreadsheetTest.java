@@ -0,0 +1,166 @@
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The spreadsheet read in parallel chunks against the same file read sequentially
+class MappingSpreadsheetTest {
+    private static final String HEADER = "\"Validated\",\"Class Name\",\"Unmapped Name\",\"Mapped Name\","
+        + "\"Side(auto, 0 client 2 both)\",\"JavaDocs Comment\"\n";
+    // Javadoc as it appears between the quotes of the last column, with line breaks, doubled quotes and backslash
+    // escapes for the chunk boundaries to land in or next to
+    private static final String[] JAVADOCS = { "", "Returns the width", "First line\nSecond line",
+        "Ends with a break\n", "\n\nStarts with breaks", "Says \"\"hi\"\"\nthen stops", "An escaped \\\" quote",
+        "A backslash \\\\", "\\\\\"\"\n\\\"", "Break then escape\n\\\"\n", "\u00e9t\u00e9 \u2014 \u0394" };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void chunkedReadMatchesSequentialRead() throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int seed = 0; seed < 8; seed++) {
+                File sheet = writeSheet(new Random(seed), 600);
+                SpreadsheetDiagnostics expectedDiagnostics = new SpreadsheetDiagnostics();
+                MappingSpreadsheet expected = MappingSpreadsheet.read(sheet, expectedDiagnostics);
+                assertTrue(expectedDiagnostics.getTotal() > 0);
+                // Up to the four chunks a thread the pool allows
+                for (int chunks = 2; chunks <= 16; chunks++) {
+                    SpreadsheetDiagnostics diagnostics = new SpreadsheetDiagnostics();
+                    MappingSpreadsheet chunked = MappingSpreadsheet.read(sheet, diagnostics, pool,
+                        sheet.length() / chunks);
+                    String message = "seed " + seed + ", " + chunks + " chunks";
+                    assertEntriesEqual(expected.getMethods(), chunked.getMethods(), message);
+                    assertEntriesEqual(expected.getFields(), chunked.getFields(), message);
+                    assertEntriesEqual(expected.getParams(), chunked.getParams(), message);
+                    assertEquals(expectedDiagnostics.summary(), diagnostics.summary(), message);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void chunksEndBetweenRecords() throws IOException, CsvValidationException {
+        for (int seed = 0; seed < 8; seed++) {
+            byte[] data = Files.readAllBytes(writeSheet(new Random(seed), 300).toPath());
+            List<String[]> expected = parse(data, 0, data.length);
+            for (int chunks = 2; chunks <= 64; chunks++) {
+                int[] bounds = MappingSpreadsheet.splitRecords(data, chunks);
+                assertEquals(0, bounds[0]);
+                assertEquals(data.length, bounds[bounds.length - 1]);
+                List<String[]> records = new ArrayList<>();
+                for (int c = 0; c + 1 < bounds.length; c++) {
+                    records.addAll(parse(data, bounds[c], bounds[c + 1]));
+                }
+                assertEquals(expected.size(), records.size(), "seed " + seed + ", " + chunks + " chunks");
+                for (int i = 0; i < expected.size(); i++) {
+                    assertArrayEquals(expected.get(i), records.get(i), "seed " + seed + ", record " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void chunksShareOnePool() throws IOException {
+        File sheet = writeSheet(new Random(1), 600);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MappingSpreadsheet chunked = MappingSpreadsheet.read(sheet, new SpreadsheetDiagnostics(), pool,
+                sheet.length() / 16);
+            Set<String> classNames = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Map<String, MappingSpreadsheet.Entry> entries : List.of(chunked.getMethods(), chunked.getFields(),
+                chunked.getParams())) {
+                entries.values().forEach(entry -> classNames.add(entry.getClassName()));
+            }
+            assertEquals(1, classNames.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertEntriesEqual(Map<String, MappingSpreadsheet.Entry> expected,
+        Map<String, MappingSpreadsheet.Entry> actual, String message) {
+        assertEquals(expected.keySet(), actual.keySet(), message);
+        for (Map.Entry<String, MappingSpreadsheet.Entry> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue().toCSVLine(), actual.get(entry.getKey()).toCSVLine(),
+                message + ", " + entry.getKey());
+        }
+    }
+
+    private static List<String[]> parse(byte[] data, int start, int end) throws IOException, CsvValidationException {
+        List<String[]> records = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(new InputStreamReader(new ByteArrayInputStream(data, start, end - start),
+            Charset.defaultCharset()))) {
+            String[] record;
+            while ((record = reader.readNext()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    // Rows in file order, a fifth of them repeating a name from earlier in the file (the last of them is kept), and
+    // a few of each problem the diagnostics report
+    private File writeSheet(Random random, int rows) throws IOException {
+        StringBuilder csv = new StringBuilder(HEADER);
+        for (int row = 0; row < rows; row++) {
+            int id = random.nextInt(5) == 0 ? 1 + random.nextInt(row + 1) : row + 1;
+            String unmapped;
+            switch (random.nextInt(3)) {
+                case 0:
+                    unmapped = "field_" + id + "_b";
+                    break;
+                case 1:
+                    unmapped = "p_" + id + "_" + random.nextInt(3) + "_";
+                    break;
+                default:
+                    unmapped = "func_" + id + "_a";
+                    break;
+            }
+            String side = Integer.toString(random.nextInt(3));
+            switch (random.nextInt(40)) {
+                case 0:
+                    csv.append("\"FALSE\",\"net/minecraft/Foo\",\"").append(unmapped).append("\",\"short\"\n");
+                    continue;
+                case 1:
+                    side = "9";
+                    break;
+                case 2:
+                    unmapped = "notSrg" + id;
+                    break;
+                default:
+                    break;
+            }
+            csv.append(random.nextInt(7) == 0 ? "\"MAYBE\"" : random.nextBoolean() ? "\"TRUE\"" : "\"FALSE\"")
+                .append(",\"net/minecraft/Foo\",\"").append(unmapped).append("\",\"name").append(row)
+                .append("\",\"").append(side).append("\",\"")
+                .append(JAVADOCS[random.nextInt(JAVADOCS.length)]).append("\"\n");
+        }
+        File sheet = dir.resolve("sheet.csv").toFile();
+        Files.write(sheet.toPath(), csv.toString().getBytes(Charset.defaultCharset()));
+        return sheet;
+    }
+}
@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Which of MappingValidator's checks count as errors toward the tasks' thresholds
+class MappingValidatorTest {
+    @Test
+    void overloadsAreOnlyWarnings() {
+        MappingSpreadsheet mappings = new MappingSpreadsheet();
+        addMethod(mappings, "func_100_a", "get");
+        addMethod(mappings, "func_101_a", "get");
+        addMethod(mappings, "func_102_a", "get");
+        mappings.addParam("p_101_1_", new MappingSpreadsheet.Entry(true, "net/minecraft/Foo", "p_101_1_", "index",
+            Side.BOTH, ""));
+
+        MappingValidator.Report report = MappingValidator.validate(mappings, null, 5, Runnable::run);
+        assertFalse(MappingValidator.Check.DUPLICATE_METHOD_NAME.isError());
+        assertEquals(2, report.getCount(MappingValidator.Check.DUPLICATE_METHOD_NAME));
+        assertEquals(2, report.getTotal());
+        assertEquals(0, report.getErrors());
+    }
+
+    @Test
+    void duplicateFieldsAndOrphanedParamsAreErrors() {
+        MappingSpreadsheet mappings = new MappingSpreadsheet();
+        addMethod(mappings, "func_100_a", "get");
+        addMethod(mappings, "func_101_a", "get");
+        mappings.addField("field_200_b", new MappingSpreadsheet.Entry(true, "net/minecraft/Foo", "field_200_b",
+            "width", Side.BOTH, ""));
+        mappings.addField("field_201_b", new MappingSpreadsheet.Entry(true, "net/minecraft/Foo", "field_201_b",
+            "width", Side.BOTH, ""));
+        mappings.addParam("p_300_1_", new MappingSpreadsheet.Entry(true, "net/minecraft/Foo", "p_300_1_", "scale",
+            Side.BOTH, ""));
+
+        MappingValidator.Report report = MappingValidator.validate(mappings, null, 5, Runnable::run);
+        assertEquals(3, report.getTotal());
+        assertEquals(2, report.getErrors());
+        assertTrue(report.summary().contains("2 errors"), report.summary());
+    }
+
+    private static void addMethod(MappingSpreadsheet mappings, String unmapped, String mapped) {
+        mappings.addMethod(unmapped, new MappingSpreadsheet.Entry(true, "net/minecraft/Foo", unmapped, mapped,
+            Side.BOTH, ""));
+    }
+}
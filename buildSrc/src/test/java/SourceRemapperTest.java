@@ -0,0 +1,168 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// SourceRemapper against replacing one name after another with a regex, which is what it replaced
+class SourceRemapperTest {
+    private static final String[] WORDS = { "return", "this", "int", "if", "new", "value", "x", "get", "func",
+        "field", "p", "func_", "p_i", "_", "$", "\u00e9t\u00e9", "\u0394" };
+    private static final String[] SEPARATORS = { " ", "(", ")", ".", ";", "\n", "\"", "// ", "/* ", " */", ", ",
+        "\u00e9", "\u2014", "0", "_" };
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void renamesOnlyWholeMappedIdentifiers() {
+        MappingExport export = new MappingExport();
+        export.addMethod("func_100_a", new MappingExport.MemberEntry("func_100_a", "getWidth", Side.BOTH, ""));
+        export.addField("field_200_b", new MappingExport.MemberEntry("field_200_b", "width", Side.BOTH, ""));
+        export.addParam("p_100_1_", new MappingExport.ParamEntry("p_100_1_", "scale", Side.BOTH));
+        String source = "int func_100_a(int p_100_1_) { return this.field_200_b * p_100_1_; }\n"
+            + "// func_100_a, func_100_ab, xfunc_100_a, func_100_a\u00e9, field_200_b_, \"field_200_b\"\n";
+
+        String expected = "int getWidth(int scale) { return this.width * scale; }\n"
+            + "// getWidth, func_100_ab, xfunc_100_a, func_100_a\u00e9, field_200_b_, \"width\"\n";
+        assertEquals(expected, remap(new SourceRemapper(export), source));
+        assertEquals(expected, remapNaive(export, source));
+    }
+
+    @Test
+    void rowsWithoutANameAreLeftAlone() throws IOException {
+        Path sheet = dir.resolve("sheet.csv");
+        Files.write(sheet, ("validated,class,searge,name,side,desc\n"
+            + "TRUE,net/minecraft/Foo,func_100_a,getWidth,0,\n"
+            + "TRUE,net/minecraft/Foo,func_101_b,,0,\n"
+            + "TRUE,net/minecraft/Foo,field_200_b, ,0,\n").getBytes(StandardCharsets.UTF_8));
+        MappingExport export = GenerateMappingExport.toExport(MappingSpreadsheet.read(sheet.toFile()));
+        assertEquals("", export.getMethod("func_101_b").getMappedName());
+
+        SourceRemapper remapper = new SourceRemapper(export);
+        assertEquals("getWidth(func_101_b(field_200_b))", remap(remapper, "func_100_a(func_101_b(field_200_b))"));
+        assertNull(remapper.remap(bytes("func_101_b + field_200_b")));
+    }
+
+    @Test
+    void treeMatchesTheNaiveReference() throws IOException {
+        Random random = new Random(0x51C);
+        MappingExport export = generateExport(random, 600);
+        List<String> names = new ArrayList<>(export.getMethods().keySet());
+        names.addAll(export.getFields().keySet());
+        names.addAll(export.getParams().keySet());
+        names.add("func_99999_z");
+        names.add("p_i99999_1_");
+
+        Path input = Files.createDirectories(dir.resolve("in/net/minecraft"));
+        List<String> sources = new ArrayList<>();
+        for (int file = 0; file < 40; file++) {
+            // A few are large enough to be memory mapped
+            String source = generateSource(random, names, file % 10 == 0 ? 10_000 : 500);
+            sources.add(source);
+            if (file == 0) {
+                assertTrue(source.length() > 64 * 1024);
+            }
+            Files.write(input.resolve("Source" + file + ".java"), source.getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(input.resolve("notes.txt"), "func_0_a stays\n".getBytes(StandardCharsets.UTF_8));
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        SourceRemapper.Stats stats;
+        try {
+            stats = new SourceRemapper(export).remapTree(dir.resolve("in"), dir.resolve("out"), executor);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(41, stats.getFiles());
+
+        Path output = dir.resolve("out/net/minecraft");
+        for (int file = 0; file < sources.size(); file++) {
+            String remapped = new String(Files.readAllBytes(output.resolve("Source" + file + ".java")),
+                StandardCharsets.UTF_8);
+            assertEquals(remapNaive(export, sources.get(file)), remapped, "Source" + file + ".java");
+        }
+        assertArrayEquals(Files.readAllBytes(input.resolve("notes.txt")),
+            Files.readAllBytes(output.resolve("notes.txt")));
+        try (Stream<Path> files = Files.list(output)) {
+            assertEquals(41, files.count());
+        }
+    }
+
+    // Every tenth row has no name yet, like rows read from a spreadsheet
+    private static MappingExport generateExport(Random random, int rows) {
+        MappingExport export = new MappingExport();
+        for (int i = 0; i < rows; i++) {
+            int id = 1 + random.nextInt(50_000);
+            String mapped = i % 10 == 0 ? (i % 20 == 0 ? "" : " ") : "name" + i;
+            switch (i % 3) {
+                case 0:
+                    String method = "func_" + id + "_" + (char) ('a' + random.nextInt(26));
+                    export.addMethod(method, new MappingExport.MemberEntry(method, mapped, Side.BOTH, ""));
+                    break;
+                case 1:
+                    String field = "field_" + id + "_" + (char) ('a' + random.nextInt(26)) + (random.nextBoolean()
+                        ? "_" : "");
+                    export.addField(field, new MappingExport.MemberEntry(field, mapped, Side.BOTH, ""));
+                    break;
+                default:
+                    String param = "p_" + (random.nextBoolean() ? "i" : "") + id + "_" + random.nextInt(5) + "_";
+                    export.addParam(param, new MappingExport.ParamEntry(param, mapped, Side.BOTH));
+                    break;
+            }
+        }
+        return export;
+    }
+
+    private static String generateSource(Random random, List<String> names, int tokens) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            source.append(random.nextInt(3) == 0 ? names.get(random.nextInt(names.size()))
+                : WORDS[random.nextInt(WORDS.length)]);
+            source.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+        }
+        return source.toString();
+    }
+
+    private static String remap(SourceRemapper remapper, String source) {
+        ByteBuffer remapped = remapper.remap(bytes(source));
+        return remapped == null ? source : StandardCharsets.UTF_8.decode(remapped).toString();
+    }
+
+    private static ByteBuffer bytes(String source) {
+        return ByteBuffer.wrap(source.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String remapNaive(MappingExport export, String source) {
+        List<Map<String, ? extends MappingExport.Entry>> tables = List.of(export.getMethods(), export.getFields(),
+            export.getParams());
+        for (Map<String, ? extends MappingExport.Entry> entries : tables) {
+            for (MappingExport.Entry entry : entries.values()) {
+                if (entry.getMappedName().isBlank() || !source.contains(entry.getUnmappedName())) {
+                    continue;
+                }
+                source = Pattern.compile("(?<!\\p{javaJavaIdentifierPart})" + Pattern.quote(entry.getUnmappedName())
+                    + "(?!\\p{javaJavaIdentifierPart})").matcher(source)
+                    .replaceAll(Matcher.quoteReplacement(entry.getMappedName()));
+            }
+        }
+        return source;
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// SrgNames against the patterns it replaced in MappingSpreadsheet
+class SrgNamesTest {
+    private static final Pattern METHOD_SRG = Pattern.compile("func_\\d+_\\w+_?");
+    private static final Pattern FIELD_SRG = Pattern.compile("field_\\d+_\\w+_?");
+    private static final Pattern PARAM_SRG = Pattern.compile("p_i?\\d+_\\d+_?");
+    private static final Pattern SRG_ID = Pattern.compile("(?:func|field|p)_i?(\\d+).*");
+
+    private static final String[] PREFIXES = { "", "f", "func", "func_", "field", "field_", "p", "p_", "p_i", "p_ii",
+        "func_1", "Func_", "p_1_" };
+    private static final char[] ALPHABET = { '0', '7', '_', 'a', 'i', 'Z', '-', '\u00e9', '\u0663' };
+
+    @Test
+    void classifiesExactlyTheNamesThePatternsMatched() {
+        List<String> names = new ArrayList<>();
+        for (String prefix : PREFIXES) {
+            addSuffixes(names, prefix, 5);
+        }
+        for (String name : names) {
+            assertEquals(classifyByPatterns(name), SrgNames.classify(name), name);
+        }
+    }
+
+    @Test
+    void classifiesRandomNamesLikeThePatterns() {
+        Random random = new Random(0x5267);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            name.setLength(0);
+            name.append(PREFIXES[random.nextInt(PREFIXES.length)]);
+            for (int length = random.nextInt(12); length > 0; length--) {
+                name.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            assertEquals(classifyByPatterns(name.toString()), SrgNames.classify(name.toString()), name.toString());
+        }
+    }
+
+    @Test
+    void parsesTheIdOfEveryAcceptedName() {
+        List<String> names = new ArrayList<>();
+        for (String prefix : PREFIXES) {
+            addSuffixes(names, prefix, 5);
+        }
+        names.add("func_70170_p");
+        names.add("field_110179_h_");
+        names.add("p_i45545_1_");
+        names.add("p_70170_2_");
+        for (String name : names) {
+            if (SrgNames.classify(name) == null) {
+                continue;
+            }
+            Matcher matcher = SRG_ID.matcher(name);
+            matcher.matches();
+            assertEquals(Integer.parseInt(matcher.group(1)), SrgNames.parseId(name), name);
+        }
+    }
+
+    @Test
+    void rejectsIdsThatOverflow() {
+        assertEquals(SrgNames.NO_ID, SrgNames.parseId("func_99999999999_a"));
+        assertEquals(Integer.MAX_VALUE / 10, SrgNames.parseId("func_" + Integer.MAX_VALUE / 10 + "_a"));
+        // Up to the largest id, whatever its last digit
+        for (long id = Integer.MAX_VALUE - 9L; id <= Integer.MAX_VALUE; id++) {
+            assertEquals(id, SrgNames.parseId("func_" + id + "_a"));
+            assertEquals(id, SrgNames.parseId("p_i" + id + "_1_"));
+        }
+        assertEquals(SrgNames.NO_ID, SrgNames.parseId("func_2147483648_a"));
+        assertEquals(SrgNames.NO_ID, SrgNames.parseId("field_2147483650_a"));
+        assertEquals(SrgNames.NO_ID, SrgNames.parseId("func_21474836470_a"));
+    }
+
+    private static MappingType classifyByPatterns(String name) {
+        if (METHOD_SRG.matcher(name).matches()) {
+            return MappingType.METHOD;
+        } else if (FIELD_SRG.matcher(name).matches()) {
+            return MappingType.FIELD;
+        } else if (PARAM_SRG.matcher(name).matches()) {
+            return MappingType.PARAM;
+        }
+        return null;
+    }
+
+    private static void addSuffixes(List<String> names, String prefix, int length) {
+        names.add(prefix);
+        if (length == 0) {
+            return;
+        }
+        for (char c : ALPHABET) {
+            addSuffixes(names, prefix + c, length - 1);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Runs the mapping tasks in a throwaway build with its own build cache
+class TaskCachingTest {
+    @TempDir
+    Path projectDir;
+
+    @BeforeEach
+    void writeProject() throws IOException {
+        String classpath = Arrays.stream(System.getProperty("mappings.taskClasspath").split(File.pathSeparator))
+            .map(path -> "'" + path.replace('\\', '/') + "'")
+            .collect(Collectors.joining(", "));
+        write("settings.gradle", "buildCache {\n"
+            + "    local {\n"
+            + "        directory = file('build-cache')\n"
+            + "    }\n"
+            + "}\n");
+        write("build.gradle", "buildscript {\n"
+            + "    dependencies {\n"
+            + "        classpath files(" + classpath + ")\n"
+            + "    }\n"
+            + "}\n"
+            + "\n"
+            + "task combineMappings(type: CombineMappings) {\n"
+            + "    baseExportZip = file('base.zip')\n"
+            + "    spreadsheet = file('spreadsheet.csv')\n"
+            + "    output = file('build/combined.csv')\n"
+            + "}\n"
+            + "\n"
+            + "task generateExport(type: GenerateMappingExport, dependsOn: combineMappings) {\n"
+            + "    spreadsheet = file('build/combined.csv')\n"
+            + "    output = file('build/export.zip')\n"
+            + "}\n"
+            + "\n"
+            + "task applyDeltaExports(type: ApplyDeltaExports) {\n"
+            + "    baseExport = file('base.zip')\n"
+            + "    deltas = (findProperty('deltas') ?: '').tokenize(',').collect { file(it) }\n"
+            + "    output = file('build/applied.zip')\n"
+            + "}\n"
+            + "\n"
+            + "task mergeMappings(type: MergeMappings) {\n"
+            + "    sources = (findProperty('mergeSources') ?: 'spreadsheet.csv,base.zip').tokenize(',')\n"
+            + "        .collect { file(it) }\n"
+            + "    rules = (findProperty('mergeRules') ?: 'priority').tokenize(',')\n"
+            + "    output = file('build/merged.csv')\n"
+            + "}\n"
+            + "\n"
+            + "task generateDatedExport(type: GenerateCombinedExport) {\n"
+            + "    baseExportZip = file('base.zip')\n"
+            + "    spreadsheet = file('spreadsheet.csv')\n"
+            + "    maxValidationProblems = 10\n"
+            + "    parallel = findProperty('parallel') == 'true'\n"
+            + "    compressionLevel = (findProperty('compressionLevel') ?: '-1').toInteger()\n"
+            + "    output = file('build/dated.zip')\n"
+            + "    metricsOutput = file('build/dated-metrics.json')\n"
+            + "    diagnosticsOutput = file('build/dated-diagnostics.json')\n"
+            + "    validationOutput = file('build/dated-validation.json')\n"
+            + "    upstreamMetrics = [file('build/metrics/download.json')]\n"
+            + "}\n");
+        writeSpreadsheet("getWidth");
+
+        MappingExport base = new MappingExport();
+        base.addMethod("func_100_a", new MappingExport.MemberEntry("func_100_a", "tick", Side.BOTH, "Ticks it"));
+        base.addField("field_200_b", new MappingExport.MemberEntry("field_200_b", "width", Side.CLIENT, ""));
+        base.addParam("p_100_1_", new MappingExport.ParamEntry("p_100_1_", "delta", Side.BOTH));
+        base.write(projectDir.resolve("base.zip").toFile());
+    }
+
+    @Test
+    void unchangedInputsAreUpToDate() {
+        BuildResult first = run();
+        assertEquals(TaskOutcome.SUCCESS, first.task(":combineMappings").getOutcome());
+        assertEquals(TaskOutcome.SUCCESS, first.task(":generateExport").getOutcome());
+
+        BuildResult second = run();
+        assertEquals(TaskOutcome.UP_TO_DATE, second.task(":combineMappings").getOutcome());
+        assertEquals(TaskOutcome.UP_TO_DATE, second.task(":generateExport").getOutcome());
+    }
+
+    @Test
+    void deletedOutputsComeFromTheCache() throws IOException {
+        run();
+        byte[] export = Files.readAllBytes(projectDir.resolve("build/export.zip"));
+        deleteBuildDir();
+
+        BuildResult result = run();
+        assertEquals(TaskOutcome.FROM_CACHE, result.task(":combineMappings").getOutcome());
+        assertEquals(TaskOutcome.FROM_CACHE, result.task(":generateExport").getOutcome());
+        assertArrayEquals(export, Files.readAllBytes(projectDir.resolve("build/export.zip")));
+    }
+
+    @Test
+    void changedSpreadsheetIsRebuilt() throws IOException {
+        run();
+        writeSpreadsheet("getHeight");
+
+        BuildResult result = run();
+        assertEquals(TaskOutcome.SUCCESS, result.task(":combineMappings").getOutcome());
+        assertEquals(TaskOutcome.SUCCESS, result.task(":generateExport").getOutcome());
+
+        // And back again, which the cache already has
+        writeSpreadsheet("getWidth");
+        deleteBuildDir();
+        result = run();
+        assertEquals(TaskOutcome.FROM_CACHE, result.task(":combineMappings").getOutcome());
+    }
+
+    @Test
+    void reorderedMergeSourcesAreMergedAgain() throws IOException {
+        write("other.csv", "validated,class,searge,name,side,desc\n"
+            + "TRUE,net/minecraft/Foo,func_300_c,getOther,0,\n");
+        assertEquals(TaskOutcome.SUCCESS, run("mergeMappings", "-PmergeSources=spreadsheet.csv,other.csv")
+            .task(":mergeMappings").getOutcome());
+        assertTrue(read("build/merged.csv").contains("getWidth"));
+
+        assertEquals(TaskOutcome.SUCCESS, run("mergeMappings", "-PmergeSources=other.csv,spreadsheet.csv")
+            .task(":mergeMappings").getOutcome());
+        assertTrue(read("build/merged.csv").contains("getOther"));
+
+        // Cached both ways round
+        deleteBuildDir();
+        assertEquals(TaskOutcome.FROM_CACHE, run("mergeMappings", "-PmergeSources=spreadsheet.csv,other.csv")
+            .task(":mergeMappings").getOutcome());
+        assertTrue(read("build/merged.csv").contains("getWidth"));
+    }
+
+    @Test
+    void reorderedDeltasAreAppliedAgain() throws IOException {
+        MappingExport base = MappingExport.read(projectDir.resolve("base.zip").toFile());
+        MappingExport renamed = MappingExport.read(projectDir.resolve("base.zip").toFile());
+        renamed.addMethod("func_100_a", new MappingExport.MemberEntry("func_100_a", "update", Side.BOTH, ""));
+        MappingDelta.between(base, renamed).write(projectDir.resolve("rename.zip").toFile());
+        MappingDelta.between(renamed, base).write(projectDir.resolve("revert.zip").toFile());
+
+        run("applyDeltaExports", "-Pdeltas=rename.zip,revert.zip");
+        assertEquals("tick", readExport("build/applied.zip").getMethod("func_100_a").getMappedName());
+
+        // Run rather than up to date, and so turned down as revert.zip wasn't made against the base
+        BuildResult result = runner("applyDeltaExports", "-Pdeltas=revert.zip,rename.zip").buildAndFail();
+        assertEquals(TaskOutcome.FAILED, result.task(":applyDeltaExports").getOutcome());
+        assertTrue(result.getOutput().contains("The delta was made against a different export"), result.getOutput());
+    }
+
+    @Test
+    void combinedExportIsUpToDateAndCached() throws IOException {
+        assertEquals(TaskOutcome.SUCCESS, run("generateDatedExport").task(":generateDatedExport").getOutcome());
+        assertTrue(read("build/dated-metrics.json").contains("\"parse spreadsheet\""));
+        assertEquals(TaskOutcome.UP_TO_DATE, run("generateDatedExport").task(":generateDatedExport").getOutcome());
+        // Only changes how the work is done, not what it makes
+        assertEquals(TaskOutcome.UP_TO_DATE, run("generateDatedExport", "-Pparallel=true")
+            .task(":generateDatedExport").getOutcome());
+
+        assertEquals(TaskOutcome.SUCCESS, run("generateDatedExport", "-PcompressionLevel=9")
+            .task(":generateDatedExport").getOutcome());
+        byte[] export = Files.readAllBytes(projectDir.resolve("build/dated.zip"));
+        byte[] validation = Files.readAllBytes(projectDir.resolve("build/dated-validation.json"));
+
+        deleteBuildDir();
+        assertEquals(TaskOutcome.FROM_CACHE, run("generateDatedExport", "-PcompressionLevel=9")
+            .task(":generateDatedExport").getOutcome());
+        assertArrayEquals(export, Files.readAllBytes(projectDir.resolve("build/dated.zip")));
+        assertArrayEquals(validation, Files.readAllBytes(projectDir.resolve("build/dated-validation.json")));
+        // The timings were of the run that made the cache entry, not this one
+        assertFalse(Files.exists(projectDir.resolve("build/dated-metrics.json")));
+    }
+
+    @Test
+    void mergeByTimestampIsNotCached() throws IOException {
+        run("mergeMappings", "-PmergeRules=newest-wins");
+        deleteBuildDir();
+        assertEquals(TaskOutcome.SUCCESS, run("mergeMappings", "-PmergeRules=newest-wins").task(":mergeMappings")
+            .getOutcome());
+    }
+
+    private BuildResult run() {
+        return run("generateExport");
+    }
+
+    private BuildResult run(String... arguments) {
+        return runner(arguments).build();
+    }
+
+    private GradleRunner runner(String... arguments) {
+        List<String> allArguments = new ArrayList<>(Arrays.asList(arguments));
+        allArguments.add("--build-cache");
+        allArguments.add("--stacktrace");
+        return GradleRunner.create()
+            .withProjectDir(projectDir.toFile())
+            .withArguments(allArguments);
+    }
+
+    private MappingExport readExport(String name) {
+        return MappingExport.read(projectDir.resolve(name).toFile());
+    }
+
+    private String read(String name) throws IOException {
+        return new String(Files.readAllBytes(projectDir.resolve(name)), StandardCharsets.UTF_8);
+    }
+
+    private void writeSpreadsheet(String methodName) throws IOException {
+        write("spreadsheet.csv", "validated,class,searge,name,side,desc\n"
+            + "TRUE,net/minecraft/Foo,func_300_c," + methodName + ",0,Gets it\n"
+            + "TRUE,net/minecraft/Foo,p_300_1_,scale,0,\n");
+    }
+
+    private void deleteBuildDir() throws IOException {
+        Path build = projectDir.resolve("build");
+        try (Stream<Path> paths = Files.walk(build)) {
+            for (Path path : paths.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private void write(String name, String content) throws IOException {
+        Files.write(projectDir.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}